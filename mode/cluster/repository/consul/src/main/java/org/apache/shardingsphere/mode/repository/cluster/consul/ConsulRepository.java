@@ -30,25 +30,20 @@ import com.google.common.base.Strings;
 import lombok.Getter;
 import org.apache.http.HttpStatus;
 import org.apache.shardingsphere.infra.instance.ComputeNodeInstanceContext;
-import org.apache.shardingsphere.mode.event.DataChangedEvent;
 import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepository;
 import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepositoryConfiguration;
 import org.apache.shardingsphere.mode.repository.cluster.consul.props.ConsulProperties;
 import org.apache.shardingsphere.mode.repository.cluster.consul.props.ConsulPropertyKey;
+import org.apache.shardingsphere.mode.repository.cluster.consul.watch.ConsulWatchMultiplexer;
 import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
 import org.apache.shardingsphere.mode.repository.cluster.lock.holder.DistributedLockHolder;
 
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Map;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * Registry repository of Consul.
@@ -64,7 +59,7 @@ public final class ConsulRepository implements ClusterPersistRepository {
     @Getter
     private DistributedLockHolder distributedLockHolder;
     
-    private Map<String, Collection<String>> watchKeyMap;
+    private ConsulWatchMultiplexer watchMultiplexer;
     
     @Override
     public void init(final ClusterPersistRepositoryConfiguration config, final ComputeNodeInstanceContext computeNodeInstanceContext) {
@@ -72,7 +67,7 @@ public final class ConsulRepository implements ClusterPersistRepository {
         ConsulRawClient rawClient = createConsulRawClient(config.getServerLists());
         consulClient = new ShardingSphereConsulClient(rawClient);
         distributedLockHolder = new DistributedLockHolder(getType(), consulClient, consulProps);
-        watchKeyMap = new HashMap<>(6, 1F);
+        watchMultiplexer = new ConsulWatchMultiplexer(consulClient, consulProps.getValue(ConsulPropertyKey.BLOCK_QUERY_TIME_TO_SECONDS), consulProps.getValue(ConsulPropertyKey.MAX_WATCH_QUERIES));
     }
     
     @Override
@@ -124,6 +119,7 @@ public final class ConsulRepository implements ClusterPersistRepository {
      */
     @Override
     public void close() {
+        watchMultiplexer.close();
     }
     
     @Override
@@ -170,65 +166,12 @@ public final class ConsulRepository implements ClusterPersistRepository {
     
     @Override
     public void watch(final String key, final DataChangedEventListener listener) {
-        Thread watchThread = new Thread(() -> watchChildKeyChangeEvent(key, listener));
-        watchThread.setDaemon(true);
-        watchThread.start();
+        watchMultiplexer.watch(key, listener);
     }
     
     @Override
     public void removeDataListener(final String key) {
-    }
-    
-    private void watchChildKeyChangeEvent(final String key, final DataChangedEventListener listener) {
-        AtomicBoolean running = new AtomicBoolean(true);
-        long currentIndex = 0;
-        while (running.get()) {
-            Response<List<GetValue>> response = consulClient.getKVValues(key, new QueryParams(consulProps.getValue(ConsulPropertyKey.BLOCK_QUERY_TIME_TO_SECONDS), currentIndex));
-            List<GetValue> value = response.getValue();
-            if (null == value) {
-                continue;
-            }
-            Long index = response.getConsulIndex();
-            if (null != index && 0 == currentIndex) {
-                currentIndex = index;
-                if (!watchKeyMap.containsKey(key)) {
-                    watchKeyMap.put(key, new HashSet<>());
-                }
-                Collection<String> watchKeys = watchKeyMap.get(key);
-                for (GetValue each : value) {
-                    watchKeys.add(each.getKey());
-                }
-                continue;
-            }
-            if (null != index && index > currentIndex) {
-                currentIndex = index;
-                Collection<String> newKeys = new HashSet<>(value.size(), 1F);
-                Collection<String> watchKeys = watchKeyMap.get(key);
-                for (GetValue each : value) {
-                    newKeys.add(each.getKey());
-                    if (!watchKeys.contains(each.getKey())) {
-                        watchKeys.add(each.getKey());
-                        fireDataChangeEvent(each, listener, DataChangedEvent.Type.ADDED);
-                    } else if (watchKeys.contains(each.getKey()) && each.getModifyIndex() >= currentIndex) {
-                        fireDataChangeEvent(each, listener, DataChangedEvent.Type.UPDATED);
-                    }
-                }
-                for (String each : watchKeys) {
-                    if (!newKeys.contains(each)) {
-                        GetValue getValue = new GetValue();
-                        getValue.setKey(each);
-                        fireDataChangeEvent(getValue, listener, DataChangedEvent.Type.DELETED);
-                    }
-                }
-                watchKeyMap.put(key, newKeys);
-            } else if (null != index && index < currentIndex) {
-                currentIndex = 0;
-            }
-        }
-    }
-    
-    private void fireDataChangeEvent(final GetValue getValue, final DataChangedEventListener listener, final DataChangedEvent.Type type) {
-        listener.onChange(new DataChangedEvent(getValue.getKey(), getValue.getValue(), type));
+        watchMultiplexer.remove(key);
     }
     
     /**
@@ -36,7 +36,12 @@ public enum ConsulPropertyKey implements TypedPropertyKey {
     /**
      * Block query time seconds.
      */
-    BLOCK_QUERY_TIME_TO_SECONDS("blockQueryTimeToSeconds", "60", long.class);
+    BLOCK_QUERY_TIME_TO_SECONDS("blockQueryTimeToSeconds", "60", long.class),
+    
+    /**
+     * Max blocking queries of watches, watches beyond it share a query of their common key prefix.
+     */
+    MAX_WATCH_QUERIES("maxWatchQueries", "8", int.class);
     
     private final String key;
     
@@ -0,0 +1,146 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.consul.watch;
+
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Consul watch of key, whose blocking query also serves listeners of keys under it.
+ *
+ * <p>Responses of one watch are handled one at a time, and a cancelled watch ignores responses still in flight.</p>
+ */
+@RequiredArgsConstructor
+@Getter
+public final class ConsulWatch {
+    
+    private final String key;
+    
+    private final Map<String, Collection<DataChangedEventListener>> listeners = new ConcurrentHashMap<>();
+    
+    private volatile boolean cancelled;
+    
+    private long currentIndex;
+    
+    private Collection<String> watchKeys = new HashSet<>();
+    
+    /**
+     * Add listener of watched key, which is the key of watch or a key under it.
+     *
+     * @param watchedKey watched key
+     * @param listener data changed event listener
+     */
+    public void addListener(final String watchedKey, final DataChangedEventListener listener) {
+        listeners.computeIfAbsent(watchedKey, unused -> new CopyOnWriteArrayList<>()).add(listener);
+    }
+    
+    /**
+     * Remove listeners of watched key.
+     *
+     * @param watchedKey watched key
+     */
+    public void removeListeners(final String watchedKey) {
+        listeners.remove(watchedKey);
+    }
+    
+    /**
+     * Cancel watch.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+    
+    /**
+     * Cancel watch and move its listeners, index and keys to a new watch of ancestor key.
+     *
+     * @param ancestorKey ancestor key, which is a prefix of the key of watch
+     * @return new watch of ancestor key
+     */
+    public synchronized ConsulWatch moveTo(final String ancestorKey) {
+        cancel();
+        ConsulWatch result = new ConsulWatch(ancestorKey);
+        result.listeners.putAll(listeners);
+        result.currentIndex = currentIndex;
+        result.watchKeys = new HashSet<>(watchKeys);
+        return result;
+    }
+    
+    /**
+     * Handle response of blocking query and fire data changed events.
+     *
+     * <p>Consul responds without value when no key is under the watched key, which is handled as an empty key set.</p>
+     *
+     * @param response response of blocking query
+     */
+    public synchronized void handle(final Response<List<GetValue>> response) {
+        Long index = response.getConsulIndex();
+        if (null == index || cancelled) {
+            return;
+        }
+        List<GetValue> value = null == response.getValue() ? Collections.emptyList() : response.getValue();
+        if (0 == currentIndex) {
+            currentIndex = index;
+            for (GetValue each : value) {
+                watchKeys.add(each.getKey());
+            }
+            return;
+        }
+        if (index > currentIndex) {
+            currentIndex = index;
+            Collection<String> newKeys = new HashSet<>(value.size(), 1F);
+            for (GetValue each : value) {
+                newKeys.add(each.getKey());
+                if (!watchKeys.contains(each.getKey())) {
+                    fireDataChangeEvent(each.getKey(), each.getValue(), DataChangedEvent.Type.ADDED);
+                } else if (each.getModifyIndex() >= currentIndex) {
+                    fireDataChangeEvent(each.getKey(), each.getValue(), DataChangedEvent.Type.UPDATED);
+                }
+            }
+            for (String each : watchKeys) {
+                if (!newKeys.contains(each)) {
+                    fireDataChangeEvent(each, null, DataChangedEvent.Type.DELETED);
+                }
+            }
+            watchKeys = newKeys;
+        } else if (index < currentIndex) {
+            currentIndex = 0;
+        }
+    }
+    
+    private void fireDataChangeEvent(final String key, final String value, final DataChangedEvent.Type type) {
+        DataChangedEvent event = new DataChangedEvent(key, value, type);
+        for (Entry<String, Collection<DataChangedEventListener>> entry : listeners.entrySet()) {
+            if (key.startsWith(entry.getKey())) {
+                entry.getValue().forEach(each -> each.onChange(event));
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.consul.watch;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consul watch multiplexer, which shares a bounded number of blocking queries among all watches.
+ *
+ * <p>Watch of a key under a queried key joins the blocking query of that key and is notified by local fan-out.
+ * Other watches run blocking queries of their own until max queries are running, after that a new watch is merged with the query
+ * sharing the longest common prefix, which is replaced by a query of the common prefix. The pool keeps one thread for every running
+ * blocking query, so every blocking query waits with the configured wait time and delivers changes as soon as they happen.</p>
+ */
+public final class ConsulWatchMultiplexer {
+    
+    private static final long RETRY_DELAY_MILLISECONDS = 1000L;
+    
+    private final ConsulClient client;
+    
+    private final long blockQueryTimeSeconds;
+    
+    private final int maxQueries;
+    
+    private final ScheduledThreadPoolExecutor executor;
+    
+    private final Map<String, ConsulWatch> watches = new ConcurrentHashMap<>();
+    
+    private final Collection<ConsulWatch> queries = new HashSet<>();
+    
+    private int runningQueries;
+    
+    public ConsulWatchMultiplexer(final ConsulClient client, final long blockQueryTimeSeconds, final int maxQueries) {
+        this.client = client;
+        this.blockQueryTimeSeconds = blockQueryTimeSeconds;
+        this.maxQueries = Math.max(1, maxQueries);
+        executor = new ScheduledThreadPoolExecutor(1, new ThreadFactoryBuilder().setDaemon(true).setNameFormat("consul-watch-%d").build());
+    }
+    
+    /**
+     * Watch key, listeners of the same key or of keys under a queried key share one blocking query.
+     *
+     * @param key key to be watched
+     * @param listener data changed event listener
+     */
+    public synchronized void watch(final String key, final DataChangedEventListener listener) {
+        ConsulWatch watch = watches.get(key);
+        if (null == watch) {
+            Optional<ConsulWatch> coveringQuery = findCoveringQuery(key);
+            if (coveringQuery.isPresent()) {
+                watch = coveringQuery.get();
+            } else if (queries.size() < maxQueries) {
+                watch = new ConsulWatch(key);
+                queries.add(watch);
+                startQuery(watch);
+            } else {
+                watch = mergeQuery(key);
+            }
+            watches.put(key, watch);
+        }
+        watch.addListener(key, listener);
+    }
+    
+    private Optional<ConsulWatch> findCoveringQuery(final String key) {
+        return queries.stream().filter(each -> key.startsWith(each.getKey())).findFirst();
+    }
+    
+    private ConsulWatch mergeQuery(final String key) {
+        ConsulWatch nearestQuery = queries.stream().max(Comparator.comparingInt(each -> getCommonPrefix(each.getKey(), key).length())).orElseThrow(IllegalStateException::new);
+        String ancestorKey = getCommonPrefix(nearestQuery.getKey(), key);
+        ConsulWatch result = nearestQuery.moveTo(ancestorKey);
+        queries.remove(nearestQuery);
+        queries.add(result);
+        watches.replaceAll((unused, each) -> nearestQuery == each ? result : each);
+        try {
+            result.handle(client.getKVValues(ancestorKey, QueryParams.DEFAULT));
+        } finally {
+            startQuery(result);
+        }
+        return result;
+    }
+    
+    private String getCommonPrefix(final String key, final String otherKey) {
+        int length = Math.min(key.length(), otherKey.length());
+        int result = 0;
+        while (result < length && key.charAt(result) == otherKey.charAt(result)) {
+            result++;
+        }
+        return key.substring(0, result);
+    }
+    
+    /**
+     * Remove watch of key, blocking query of the watch stops when no watched key uses it.
+     *
+     * @param key key to be removed
+     */
+    public synchronized void remove(final String key) {
+        ConsulWatch watch = watches.remove(key);
+        if (null == watch) {
+            return;
+        }
+        watch.removeListeners(key);
+        if (!watches.containsValue(watch)) {
+            watch.cancel();
+            queries.remove(watch);
+        }
+    }
+    
+    private synchronized void startQuery(final ConsulWatch watch) {
+        runningQueries++;
+        executor.setCorePoolSize(runningQueries);
+        schedule(watch, 0L);
+    }
+    
+    private synchronized void stopQuery() {
+        runningQueries--;
+        executor.setCorePoolSize(Math.max(1, runningQueries));
+    }
+    private void poll(final ConsulWatch watch) {
+        if (watch.isCancelled()) {
+            stopQuery();
+            return;
+        }
+        try {
+            watch.handle(client.getKVValues(watch.getKey(), new QueryParams(blockQueryTimeSeconds, watch.getCurrentIndex())));
+        } catch (final RuntimeException ex) {
+            schedule(watch, RETRY_DELAY_MILLISECONDS);
+            return;
+        }
+        schedule(watch, 0L);
+    }
+    
+    private void schedule(final ConsulWatch watch, final long delayMilliseconds) {
+        try {
+            executor.schedule(() -> poll(watch), delayMilliseconds, TimeUnit.MILLISECONDS);
+        } catch (final RejectedExecutionException ignored) {
+        }
+    }
+    
+    /**
+     * Close multiplexer and stop all watches.
+     */
+    public synchronized void close() {
+        queries.forEach(ConsulWatch::cancel);
+        queries.clear();
+        watches.clear();
+        executor.shutdownNow();
+    }
+}
@@ -27,6 +27,7 @@ import com.ecwid.consul.v1.session.model.NewSession;
 import lombok.SneakyThrows;
 import org.apache.http.HttpStatus;
 import org.apache.shardingsphere.mode.repository.cluster.consul.props.ConsulProperties;
+import org.apache.shardingsphere.mode.repository.cluster.consul.watch.ConsulWatchMultiplexer;
 import org.apache.shardingsphere.mode.repository.cluster.lock.holder.DistributedLockHolder;
 import org.awaitility.Awaitility;
 import org.junit.jupiter.api.BeforeEach;
@@ -41,7 +42,6 @@ import org.mockito.quality.Strictness;
 
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Properties;
@@ -118,7 +118,7 @@ class ConsulRepositoryTest {
     @SneakyThrows(ReflectiveOperationException.class)
     private void setProperties() {
         Plugins.getMemberAccessor().set(ConsulRepository.class.getDeclaredField("consulProps"), repository, new ConsulProperties(new Properties()));
-        Plugins.getMemberAccessor().set(ConsulRepository.class.getDeclaredField("watchKeyMap"), repository, new HashMap<>(4, 1F));
+        Plugins.getMemberAccessor().set(ConsulRepository.class.getDeclaredField("watchMultiplexer"), repository, new ConsulWatchMultiplexer(client, 60L, 8));
     }
     
     @Test
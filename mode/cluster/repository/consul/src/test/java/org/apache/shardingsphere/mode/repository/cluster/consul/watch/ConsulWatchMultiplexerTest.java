@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.consul.watch;
+
+import com.ecwid.consul.v1.ConsulClient;
+import com.ecwid.consul.v1.QueryParams;
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import lombok.SneakyThrows;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ConsulWatchMultiplexerTest {
+    
+    private final Map<String, BlockingQueue<Response<List<GetValue>>>> responses = new ConcurrentHashMap<>();
+    
+    private final List<String> queriedKeys = new CopyOnWriteArrayList<>();
+    
+    private final AtomicInteger failures = new AtomicInteger();
+    
+    private ConsulWatchMultiplexer multiplexer;
+    
+    @BeforeEach
+    void setUp() {
+        multiplexer = new ConsulWatchMultiplexer(new BlockingConsulClient(), 60L, 2);
+    }
+    
+    @AfterEach
+    void tearDown() {
+        multiplexer.close();
+    }
+    
+    @Test
+    void assertWatchKeyUnderWatchedKey() {
+        List<DataChangedEvent> fooEvents = new CopyOnWriteArrayList<>();
+        List<DataChangedEvent> barEvents = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/foo", fooEvents::add);
+        multiplexer.watch("/foo/bar", barEvents::add);
+        respond("/foo", 1L);
+        respond("/foo", 2L, createGetValue("/foo/bar/baz", 2L), createGetValue("/foo/qux", 2L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> 2 == fooEvents.size() && 1 == barEvents.size());
+        assertThat(barEvents.get(0).getKey(), is("/foo/bar/baz"));
+        assertThat(new HashSet<>(queriedKeys), is(Collections.singleton("/foo")));
+    }
+    
+    @Test
+    void assertWatchDisjointKeysConcurrently() {
+        List<DataChangedEvent> events = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/foo", events::add);
+        multiplexer.watch("/bar", events::add);
+        respond("/foo", 1L);
+        respond("/bar", 1L);
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> responses.get("/foo").isEmpty() && responses.get("/bar").isEmpty());
+        respond("/bar", 2L, createGetValue("/bar/baz", 2L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> 1 == events.size());
+        assertThat(events.get(0).getKey(), is("/bar/baz"));
+    }
+    
+    @Test
+    void assertMergeWatchesBeyondMaxQueries() {
+        List<DataChangedEvent> fooEvents = new CopyOnWriteArrayList<>();
+        List<DataChangedEvent> barEvents = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/nodes/foo", fooEvents::add);
+        multiplexer.watch("/metadata", event -> {
+        });
+        respond("/nodes/foo", 1L, createGetValue("/nodes/foo/baz", 1L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> responses.get("/nodes/foo").isEmpty());
+        respond("/nodes/", 2L, createGetValue("/nodes/foo/baz", 1L), createGetValue("/nodes/foo/qux", 2L), createGetValue("/nodes/bar/baz", 2L));
+        multiplexer.watch("/nodes/bar", barEvents::add);
+        assertThat(fooEvents.size(), is(1));
+        assertThat(fooEvents.get(0).getKey(), is("/nodes/foo/qux"));
+        assertThat(barEvents.isEmpty(), is(true));
+        respond("/nodes/", 3L, createGetValue("/nodes/foo/baz", 1L), createGetValue("/nodes/foo/qux", 2L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> 1 == barEvents.size());
+        assertThat(barEvents.get(0).getKey(), is("/nodes/bar/baz"));
+        assertThat(barEvents.get(0).getType(), is(DataChangedEvent.Type.DELETED));
+        assertThat(fooEvents.size(), is(1));
+        assertThat(queriedKeys.stream().filter(each -> each.startsWith("/nodes")).distinct().collect(Collectors.toList()), is(Arrays.asList("/nodes/foo", "/nodes/")));
+    }
+    
+    @Test
+    void assertRemove() {
+        List<DataChangedEvent> fooEvents = new CopyOnWriteArrayList<>();
+        List<DataChangedEvent> barEvents = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/foo", fooEvents::add);
+        multiplexer.watch("/foo/bar", barEvents::add);
+        respond("/foo", 1L);
+        multiplexer.remove("/foo/bar");
+        respond("/foo", 2L, createGetValue("/foo/bar/baz", 2L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> 1 == fooEvents.size());
+        assertThat(barEvents.isEmpty(), is(true));
+        multiplexer.remove("/foo");
+        respond("/foo", 3L);
+        respond("/foo", 4L);
+        assertNoMoreQuery("/foo");
+        assertThat(fooEvents.size(), is(1));
+    }
+    
+    @Test
+    void assertClose() {
+        List<DataChangedEvent> events = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/foo", events::add);
+        respond("/foo", 1L);
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> responses.get("/foo").isEmpty() && 2 == queriedKeys.size());
+        multiplexer.close();
+        respond("/foo", 2L, createGetValue("/foo/bar", 2L));
+        respond("/foo", 3L, createGetValue("/foo/bar", 3L));
+        assertNoMoreQuery("/foo");
+        assertThat(events.isEmpty(), is(true));
+    }
+    
+    @Test
+    void assertRetryAfterFailure() {
+        failures.set(1);
+        List<DataChangedEvent> events = new CopyOnWriteArrayList<>();
+        multiplexer.watch("/foo", events::add);
+        respond("/foo", 1L);
+        respond("/foo", 2L, createGetValue("/foo/bar", 2L));
+        Awaitility.await().atMost(5L, TimeUnit.SECONDS).until(() -> 1 == events.size());
+        assertThat(failures.get(), is(0));
+        assertThat(events.get(0).getKey(), is("/foo/bar"));
+    }
+    
+    private void assertNoMoreQuery(final String key) {
+        Awaitility.await().pollDelay(500L, TimeUnit.MILLISECONDS).until(() -> true);
+        assertThat(responses.get(key).isEmpty(), is(false));
+    }
+    
+    private void respond(final String key, final long index, final GetValue... values) {
+        getResponses(key).add(new Response<>(Arrays.asList(values), index, true, 0L));
+    }
+    
+    private BlockingQueue<Response<List<GetValue>>> getResponses(final String key) {
+        return responses.computeIfAbsent(key, unused -> new LinkedBlockingQueue<>());
+    }
+    
+    private GetValue createGetValue(final String key, final long modifyIndex) {
+        GetValue result = new GetValue();
+        result.setKey(key);
+        result.setValue("value");
+        result.setModifyIndex(modifyIndex);
+        return result;
+    }
+    
+    private final class BlockingConsulClient extends ConsulClient {
+        
+        @Override
+        public Response<List<GetValue>> getKVValues(final String keyPrefix, final QueryParams queryParams) {
+            queriedKeys.add(keyPrefix);
+            if (failures.getAndUpdate(each -> Math.max(0, each - 1)) > 0) {
+                throw new IllegalStateException("Consul is unavailable.");
+            }
+            Response<List<GetValue>> result = pollResponse(keyPrefix);
+            return null == result ? new Response<>(null, null, true, 0L) : result;
+        }
+        
+        @SneakyThrows(InterruptedException.class)
+        private Response<List<GetValue>> pollResponse(final String keyPrefix) {
+            return getResponses(keyPrefix).poll(10L, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.consul.watch;
+
+import com.ecwid.consul.v1.Response;
+import com.ecwid.consul.v1.kv.model.GetValue;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ConsulWatchTest {
+    
+    @Test
+    void assertHandleInitialResponse() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        List<DataChangedEvent> events = new LinkedList<>();
+        watch.addListener("/key", events::add);
+        watch.handle(createResponse(1L, createGetValue("/key/foo", "foo_value", 1L)));
+        assertThat(watch.getCurrentIndex(), is(1L));
+        assertThat(events.isEmpty(), is(true));
+    }
+    
+    @Test
+    void assertHandleChangedResponse() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        List<DataChangedEvent> events = new LinkedList<>();
+        watch.addListener("/key", events::add);
+        watch.handle(createResponse(1L, createGetValue("/key/foo", "foo_value", 1L), createGetValue("/key/bar", "bar_value", 1L)));
+        watch.handle(createResponse(2L, createGetValue("/key/foo", "new_foo_value", 2L), createGetValue("/key/baz", "baz_value", 2L)));
+        assertThat(events.size(), is(3));
+        assertThat(events.get(0).getKey(), is("/key/foo"));
+        assertThat(events.get(0).getType(), is(DataChangedEvent.Type.UPDATED));
+        assertThat(events.get(1).getKey(), is("/key/baz"));
+        assertThat(events.get(1).getType(), is(DataChangedEvent.Type.ADDED));
+        assertThat(events.get(2).getKey(), is("/key/bar"));
+        assertThat(events.get(2).getType(), is(DataChangedEvent.Type.DELETED));
+    }
+    
+    @Test
+    void assertHandleChangedResponseForKeyUnderWatch() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        List<DataChangedEvent> events = new LinkedList<>();
+        watch.addListener("/key/foo", events::add);
+        watch.handle(createResponse(1L, createGetValue("/key/foo", "foo_value", 1L)));
+        watch.handle(createResponse(2L, createGetValue("/key/foo", "new_foo_value", 2L), createGetValue("/key/bar", "bar_value", 2L)));
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getKey(), is("/key/foo"));
+        assertThat(events.get(0).getValue(), is("new_foo_value"));
+        watch.removeListeners("/key/foo");
+        watch.handle(createResponse(3L));
+        assertThat(events.size(), is(1));
+    }
+    
+    @Test
+    void assertHandleResponseWithoutKeys() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        List<DataChangedEvent> events = new LinkedList<>();
+        watch.addListener("/key", events::add);
+        watch.handle(createResponse(1L, createGetValue("/key/foo", "foo_value", 1L)));
+        watch.handle(new Response<>(null, 2L, true, 0L));
+        assertThat(watch.getCurrentIndex(), is(2L));
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getKey(), is("/key/foo"));
+        assertThat(events.get(0).getType(), is(DataChangedEvent.Type.DELETED));
+    }
+    
+    @Test
+    void assertHandleResponseAfterCancel() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        List<DataChangedEvent> events = new LinkedList<>();
+        watch.addListener("/key", events::add);
+        watch.handle(createResponse(1L));
+        ConsulWatch actual = watch.moveTo("/");
+        watch.handle(createResponse(2L, createGetValue("/key/foo", "foo_value", 2L)));
+        assertThat(events.isEmpty(), is(true));
+        assertThat(actual.getCurrentIndex(), is(1L));
+        actual.handle(createResponse(2L, createGetValue("/key/foo", "foo_value", 2L), createGetValue("/other", "other_value", 2L)));
+        assertThat(events.size(), is(1));
+        assertThat(events.get(0).getKey(), is("/key/foo"));
+    }
+    
+    @Test
+    void assertHandleResponseWithResetIndex() {
+        ConsulWatch watch = new ConsulWatch("/key");
+        watch.handle(createResponse(2L));
+        watch.handle(createResponse(1L));
+        assertThat(watch.getCurrentIndex(), is(0L));
+    }
+    
+    private Response<List<GetValue>> createResponse(final long index, final GetValue... values) {
+        return new Response<>(0 == values.length ? Collections.emptyList() : Arrays.asList(values), index, true, 0L);
+    }
+    
+    private GetValue createGetValue(final String key, final String value, final long modifyIndex) {
+        GetValue result = new GetValue();
+        result.setKey(key);
+        result.setValue(value);
+        result.setModifyIndex(modifyIndex);
+        return result;
+    }
+}
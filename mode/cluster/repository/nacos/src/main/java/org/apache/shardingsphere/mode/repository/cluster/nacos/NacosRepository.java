@@ -17,137 +17,441 @@
 
 package org.apache.shardingsphere.mode.repository.cluster.nacos;
 
+import com.alibaba.nacos.api.config.ConfigFactory;
+import com.alibaba.nacos.api.config.ConfigService;
 import com.alibaba.nacos.api.exception.NacosException;
 import com.alibaba.nacos.api.naming.NamingFactory;
 import com.alibaba.nacos.api.naming.NamingService;
 import com.alibaba.nacos.api.naming.PreservedMetadataKeys;
 import com.alibaba.nacos.api.naming.pojo.Instance;
 import com.google.common.base.Preconditions;
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.util.concurrent.Striped;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
 import org.apache.shardingsphere.infra.instance.ComputeNodeInstanceContext;
 import org.apache.shardingsphere.infra.instance.util.IpUtils;
+import org.apache.shardingsphere.infra.spi.type.typed.TypedSPILoader;
 import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepository;
 import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepositoryConfiguration;
 import org.apache.shardingsphere.mode.repository.cluster.exception.ClusterRepositoryPersistException;
 import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
 import org.apache.shardingsphere.mode.repository.cluster.lock.holder.DistributedLockHolder;
-import org.apache.shardingsphere.mode.repository.cluster.lock.impl.props.DefaultLockTypedProperties;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.config.ConfigValueStore;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.EphemeralPack;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.KeyValue;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.PortAllocator;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.ServiceController;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.ServiceMetaData;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.listener.ListenerExecutor;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.listener.NamingEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.NacosMetricsCollector;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.NacosOperationType;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.props.NacosProperties;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.props.NacosPropertyKey;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceSnapshot;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceSnapshotFile;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.SecureRandom;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
 import java.util.Random;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Lock;
+import java.util.function.Function;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Registry repository of Nacos.
  */
+@Slf4j
 public final class NacosRepository implements ClusterPersistRepository {
     
     private final Random random = new SecureRandom();
     
+    private final Map<String, CompletableFuture<Void>> startupScans = new ConcurrentHashMap<>();
+    
+    private final Map<String, CompletableFuture<Void>> keyWrites = new ConcurrentHashMap<>();
+    
+    private final Collection<CompletableFuture<Void>> asyncWrites = ConcurrentHashMap.newKeySet();
+    
+    private final Striped<Lock> pathLocks = Striped.lock(64);
+    
     private NamingService client;
     
     private NacosProperties nacosProps;
     
     private ServiceController serviceController;
     
+    private volatile String ip;
+    
+    private ExecutorService writeExecutor;
+    
+    private ExecutorService deleteExecutor;
+    
+    private ScheduledExecutorService confirmExecutor;
+    
+    private ListenerExecutor listenerExecutor;
+    
+    private DistributedLockHolder distributedLockHolder;
+    
+    private NacosMetricsCollector metricsCollector;
+    
+    private InstanceSnapshotFile snapshotFile;
+    
+    private ConfigValueStore configValueStore;
+    
+    private volatile boolean reconciled;
+    
     @Override
     public void init(final ClusterPersistRepositoryConfiguration config, final ComputeNodeInstanceContext computeNodeInstanceContext) {
         nacosProps = new NacosProperties(config.getProps());
+        metricsCollector = TypedSPILoader.getService(NacosMetricsCollector.class, nacosProps.getValue(NacosPropertyKey.METRICS_COLLECTOR_TYPE));
         client = createClient(config);
+        if (NacosMetaDataUtils.CONFIG_STORAGE.equalsIgnoreCase(nacosProps.getValue(NacosPropertyKey.PERSISTENT_STORAGE))) {
+            configValueStore = new ConfigValueStore(createConfigService(config), getWaitTimeoutMillis(), nacosProps.getValue(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS));
+        }
+        initExecutors();
         initServiceMetaData();
+        distributedLockHolder = new DistributedLockHolder(getType(), this, nacosProps);
     }
     
     private NamingService createClient(final ClusterPersistRepositoryConfiguration config) {
-        Properties props = new Properties();
-        props.setProperty("serverAddr", config.getServerLists());
-        props.setProperty("namespace", config.getNamespace());
-        props.setProperty("username", nacosProps.getValue(NacosPropertyKey.USERNAME));
-        props.setProperty("password", nacosProps.getValue(NacosPropertyKey.PASSWORD));
         try {
-            return NamingFactory.createNamingService(props);
+            return NamingFactory.createNamingService(createClientProperties(config));
+        } catch (final NacosException ex) {
+            throw new ClusterRepositoryPersistException(ex);
+        }
+    }
+    
+    private ConfigService createConfigService(final ClusterPersistRepositoryConfiguration config) {
+        try {
+            return ConfigFactory.createConfigService(createClientProperties(config));
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
         }
     }
     
+    private Properties createClientProperties(final ClusterPersistRepositoryConfiguration config) {
+        Properties result = new Properties();
+        result.setProperty("serverAddr", config.getServerLists());
+        result.setProperty("namespace", config.getNamespace());
+        result.setProperty("username", nacosProps.getValue(NacosPropertyKey.USERNAME));
+        result.setProperty("password", nacosProps.getValue(NacosPropertyKey.PASSWORD));
+        return result;
+    }
+    
     private void initServiceMetaData() {
+        serviceController = new ServiceController(getPartitionPrefixes());
+        String snapshotDirectory = nacosProps.getValue(NacosPropertyKey.SNAPSHOT_DIRECTORY);
+        if (!snapshotDirectory.isEmpty()) {
+            snapshotFile = new InstanceSnapshotFile(Paths.get(snapshotDirectory));
+            serviceController.getAllServices().forEach(this::initServiceFromSnapshotFile);
+        }
+        serviceController.getDefaultServices().forEach(each -> addStartupScan(each, () -> scanService(each)));
+    }
+    
+    private void scanService(final ServiceMetaData service) {
+        if (null == service.getListener()) {
+            initService(service);
+        }
+    }
+    
+    private void addStartupScan(final ServiceMetaData service, final Runnable scan) {
+        startupScans.merge(service.getServiceName(), CompletableFuture.runAsync(scan, writeExecutor), CompletableFuture::allOf);
+    }
+    
+    private void initServiceFromSnapshotFile(final ServiceMetaData service) {
+        Optional<List<Instance>> instances = snapshotFile.load(service.getServiceName());
+        if (!instances.isPresent()) {
+            return;
+        }
+        synchronized (service) {
+            try {
+                initService(service, instances.get(), true);
+            } catch (final NacosException ex) {
+                throw new ClusterRepositoryPersistException(ex);
+            }
+        }
+        addStartupScan(service, () -> reconcile(service));
+    }
+    
+    private Collection<String> getPartitionPrefixes() {
+        Collection<String> result = Splitter.on(',').trimResults().omitEmptyStrings().splitToList(nacosProps.getValue(NacosPropertyKey.PARTITION_PREFIXES));
+        for (String each : result) {
+            Preconditions.checkArgument(each.startsWith(PATH_SEPARATOR) && !each.endsWith(PATH_SEPARATOR), "Partition prefix `%s` must start with and not end with `%s`", each, PATH_SEPARATOR);
+        }
+        return result;
+    }
+    
+    private ServiceMetaData initService(final ServiceMetaData service) {
+        checkStartupScan(service);
+        if (null != service.getListener() && 0 != service.getSubscriptionCount()) {
+            return service;
+        }
+        synchronized (service) {
+            try {
+                if (null == service.getListener()) {
+                    initService(service, getAllInstances(service), false);
+                    service.setReconciled(true);
+                } else if (0 == service.getSubscriptionCount()) {
+                    subscribe(service, service.getListener());
+                    service.getListener().refresh(getAllInstances(service));
+                }
+            } catch (final NacosException ex) {
+                throw new ClusterRepositoryPersistException(ex);
+            }
+        }
+        return service;
+    }
+    
+    private void checkStartupScan(final ServiceMetaData service) {
+        if (startupScans.isEmpty()) {
+            return;
+        }
+        CompletableFuture<Void> scan = startupScans.get(service.getServiceName());
+        if (null == scan || !scan.isDone() || !startupScans.remove(service.getServiceName(), scan) || service.isReconciled()) {
+            return;
+        }
         try {
+            scan.join();
+        } catch (final CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+    
+    private void initService(final ServiceMetaData service, final List<Instance> instances, final boolean loadedFromSnapshotFile) throws NacosException {
+        if (null != ip) {
+            recoverPorts(service, instances);
+        }
+        NamingEventListener eventListener = new NamingEventListener(service.getSnapshot(), listenerExecutor, metricsCollector, this::getValue, this::getRemovedValue);
+        eventListener.refresh(instances);
+        if (loadedFromSnapshotFile) {
+            eventListener.replayChangesToLaterListeners();
+        }
+        subscribe(service, eventListener);
+        service.setListener(eventListener);
+    }
+    
+    private void recoverPorts(final ServiceMetaData service, final Collection<Instance> instances) {
+        service.setIp(ip);
+        service.setPortAllocator(new PortAllocator(instances.stream().filter(each -> ip.equals(each.getIp())).map(Instance::getPort).collect(Collectors.toList())));
+    }
+    
+    private void waitReconciled() {
+        if (reconciled) {
+            return;
+        }
+        if (null == ip) {
             String clusterIp = nacosProps.getValue(NacosPropertyKey.CLUSTER_IP);
-            String ip = Strings.isNullOrEmpty(clusterIp) ? IpUtils.getIp() : clusterIp;
-            serviceController = new ServiceController();
-            for (ServiceMetaData each : serviceController.getAllServices()) {
-                Integer port = client.getAllInstances(each.getServiceName(), false).stream()
-                        .filter(instance -> ip.equals(instance.getIp())).map(Instance::getPort).max(Comparator.naturalOrder()).orElse(Integer.MIN_VALUE);
-                each.setIp(ip);
-                each.setPort(new AtomicInteger(port));
+            ip = Strings.isNullOrEmpty(clusterIp) ? IpUtils.getIp() : clusterIp;
+        }
+        serviceController.getAllServices().forEach(this::reconcile);
+        reconciled = true;
+    }
+    
+    private void reconcile(final ServiceMetaData service) {
+        if (service.isReconciled() && (null == ip || null != service.getPortAllocator())) {
+            return;
+        }
+        boolean fetched = false;
+        synchronized (service) {
+            if (null == service.getListener()) {
+                return;
             }
-        } catch (final NacosException ex) {
-            throw new ClusterRepositoryPersistException(ex);
+            try {
+                if (!service.isReconciled()) {
+                    service.getListener().refresh(getAllInstances(service));
+                    service.setReconciled(true);
+                    fetched = true;
+                }
+            } catch (final NacosException ex) {
+                throw new ClusterRepositoryPersistException(ex);
+            }
+            if (null != ip && null == service.getPortAllocator()) {
+                recoverPorts(service, service.getSnapshot().findAll().stream().map(InstanceEntry::getInstance).collect(Collectors.toList()));
+            }
+        }
+        if (fetched) {
+            saveSnapshotFile(service);
+        }
+    }
+    
+    private void saveSnapshotFile(final ServiceMetaData service) {
+        if (null == snapshotFile) {
+            return;
+        }
+        try {
+            Map<String, Instance> instances = new LinkedHashMap<>();
+            service.getSnapshot().findAll().forEach(each -> instances.putIfAbsent(each.getInstance().toInetAddr(), each.getInstance()));
+            snapshotFile.save(service.getServiceName(), new ArrayList<>(instances.values()));
+        } catch (final IOException ignored) {
         }
     }
     
+    private List<Instance> getAllInstances(final ServiceMetaData service) throws NacosException {
+        long startNanos = System.nanoTime();
+        List<Instance> result = client.getAllInstances(service.getServiceName(), false);
+        metricsCollector.recordLatency(NacosOperationType.GET_ALL_INSTANCES, System.nanoTime() - startNanos);
+        metricsCollector.recordGetAllInstances(result.size());
+        return result;
+    }
+    
+    private void subscribe(final ServiceMetaData service, final NamingEventListener eventListener) throws NacosException {
+        synchronized (service) {
+            if (0 == service.getSubscriptionCount()) {
+                client.subscribe(service.getServiceName(), eventListener);
+            }
+            service.setSubscriptionCount(service.getSubscriptionCount() + 1);
+        }
+    }
+    
+    private void unsubscribe(final ServiceMetaData service, final int count) throws NacosException {
+        if (0 == count) {
+            return;
+        }
+        synchronized (service) {
+            int remainingCount = service.getSubscriptionCount() - count;
+            service.setSubscriptionCount(1 == remainingCount ? 0 : remainingCount);
+            if (0 == service.getSubscriptionCount()) {
+                client.unsubscribe(service.getServiceName(), service.getListener());
+            }
+        }
+    }
+    
+    private ServiceMetaData getService(final String key, final boolean ephemeral) {
+        return initService(serviceController.getService(key, ephemeral));
+    }
+    
+    private Collection<ServiceMetaData> getServices(final String key) {
+        return serviceController.getServices(key).stream().map(this::initService).collect(Collectors.toList());
+    }
+    
+    private Collection<ServiceMetaData> getLegacyServices(final String key) {
+        return serviceController.getLegacyServices(key).stream().map(this::initService).collect(Collectors.toList());
+    }
+    
+    private Collection<ServiceMetaData> getReadableServices(final String key) {
+        Collection<ServiceMetaData> result = new LinkedList<>(getServices(key));
+        result.addAll(getLegacyServices(key));
+        return result;
+    }
+    
+    private Collection<ServiceMetaData> getCoveringServices(final String key) {
+        return serviceController.getCoveringServices(key).stream().map(this::initService).collect(Collectors.toList());
+    }
+    
+    private void initExecutors() {
+        writeExecutor = Executors.newFixedThreadPool(nacosProps.getValue(NacosPropertyKey.ASYNC_WRITE_THREADS), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nacos-write-%d").build());
+        deleteExecutor = Executors.newFixedThreadPool(nacosProps.getValue(NacosPropertyKey.DELETE_THREADS), new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nacos-delete-%d").build());
+        listenerExecutor = new ListenerExecutor(nacosProps.getValue(NacosPropertyKey.LISTENER_THREADS), nacosProps.getValue(NacosPropertyKey.LISTENER_QUEUE_CAPACITY), metricsCollector);
+        confirmExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nacos-confirm-%d").build());
+        long retryIntervalMilliseconds = nacosProps.getValue(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS);
+        confirmExecutor.scheduleWithFixedDelay(this::confirmExpectedValues, retryIntervalMilliseconds, retryIntervalMilliseconds, TimeUnit.MILLISECONDS);
+    }
+    
     @Override
     public void persistEphemeral(final String key, final String value) {
+        long startNanos = System.nanoTime();
         try {
-            Preconditions.checkNotNull(value, "Value can not be null");
-            if (!findExistedInstance(key, true).isEmpty()) {
-                delete(key);
-            }
-            put(key, value, true);
+            write(key, () -> doPersistEphemeral(key, value));
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.PERSIST_EPHEMERAL, System.nanoTime() - startNanos);
         }
     }
     
+    /**
+     * Persist ephemeral data asynchronously.
+     *
+     * @param key key of data
+     * @param value value of data
+     * @return future which completes when the data is available
+     */
+    public CompletableFuture<Void> persistEphemeralAsync(final String key, final String value) {
+        return writeAsync(NacosOperationType.PERSIST_EPHEMERAL, key, () -> doPersistEphemeral(key, value));
+    }
+    
+    private Collection<KeyValue> doPersistEphemeral(final String key, final String value) throws NacosException {
+        Preconditions.checkNotNull(value, "Value can not be null");
+        waitReconciled();
+        Collection<KeyValue> result = new LinkedList<>();
+        if (!findExistedInstance(key, true).isEmpty()) {
+            result.addAll(doDelete(key));
+            result.removeIf(each -> each.isEphemeral() && key.equals(each.getKey()));
+        }
+        result.addAll(put(key, value, true));
+        return result;
+    }
+    
     @Override
     public boolean persistExclusiveEphemeral(final String key, final String value) {
+        long startNanos = System.nanoTime();
         try {
-            Preconditions.checkState(findExistedInstance(key, true).isEmpty(), "Key `%s` already exists", key);
-            put(key, value, true);
+            write(key, () -> {
+                waitReconciled();
+                Preconditions.checkState(findExistedInstance(key, true).isEmpty(), "Key `%s` already exists", key);
+                return put(key, value, true);
+            });
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.PERSIST_EXCLUSIVE_EPHEMERAL, System.nanoTime() - startNanos);
         }
         return true;
     }
     
     @Override
     public DistributedLockHolder getDistributedLockHolder() {
-        return new DistributedLockHolder("default", this, new DefaultLockTypedProperties(new Properties()));
+        return distributedLockHolder;
+    }
+    
+    /**
+     * Get metrics collector.
+     *
+     * @return metrics collector
+     */
+    public NacosMetricsCollector getMetricsCollector() {
+        return metricsCollector;
     }
     
     @Override
     public void watch(final String key, final DataChangedEventListener listener) {
         try {
-            for (ServiceMetaData each : serviceController.getAllServices()) {
-                NamingEventListener eventListener = each.getListener();
-                if (null != eventListener) {
-                    eventListener.put(key, listener);
-                    return;
+            for (ServiceMetaData each : serviceController.getCoveringServices(key)) {
+                synchronized (each) {
+                    initService(each).getListener().put(key, listener);
+                    subscribe(each, each.getListener());
                 }
-                eventListener = new NamingEventListener();
-                eventListener.put(key, listener);
-                each.setListener(eventListener);
-                client.subscribe(each.getServiceName(), eventListener);
             }
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
@@ -156,129 +460,384 @@ public final class NacosRepository implements ClusterPersistRepository {
     
     @Override
     public void removeDataListener(final String key) {
+        try {
+            for (ServiceMetaData each : serviceController.getCoveringServices(key)) {
+                if (null != each.getListener()) {
+                    unsubscribe(each, each.getListener().remove(key));
+                }
+            }
+        } catch (final NacosException ex) {
+            throw new ClusterRepositoryPersistException(ex);
+        }
+    }
+    
+    /**
+     * Remove data changed event listener of key, other listeners of key are kept.
+     *
+     * @param key key
+     * @param listener data changed event listener
+     */
+    public void removeDataListener(final String key, final DataChangedEventListener listener) {
+        try {
+            for (ServiceMetaData each : serviceController.getCoveringServices(key)) {
+                if (null != each.getListener() && each.getListener().remove(key, listener)) {
+                    unsubscribe(each, 1);
+                }
+            }
+        } catch (final NacosException ex) {
+            throw new ClusterRepositoryPersistException(ex);
+        }
     }
     
     @Override
     public String query(final String key) {
+        long startNanos = System.nanoTime();
         try {
-            for (ServiceMetaData each : serviceController.getAllServices()) {
-                Optional<Instance> instance = findExistedInstance(key, each.isEphemeral()).stream().max(Comparator.comparing(NacosMetaDataUtils::getTimestamp));
-                if (instance.isPresent()) {
-                    return NacosMetaDataUtils.getValue(instance.get());
+            for (ServiceMetaData each : getReadableServices(key)) {
+                Optional<InstanceEntry> entry = each.getSnapshot().findLatest(key);
+                if (entry.isPresent()) {
+                    return getValue(entry.get());
                 }
             }
             return null;
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.QUERY, System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * Query values of keys in batch.
+     *
+     * @param keys keys
+     * @return values of existed keys
+     */
+    public Map<String, String> query(final Collection<String> keys) {
+        long startNanos = System.nanoTime();
+        Map<ServiceMetaData, List<String>> serviceKeys = new LinkedHashMap<>();
+        Map<ServiceMetaData, List<String>> legacyServiceKeys = new LinkedHashMap<>();
+        for (String each : keys) {
+            for (ServiceMetaData service : getServices(each)) {
+                serviceKeys.computeIfAbsent(service, unused -> new LinkedList<>()).add(each);
+            }
+            for (ServiceMetaData service : getLegacyServices(each)) {
+                legacyServiceKeys.computeIfAbsent(service, unused -> new LinkedList<>()).add(each);
+            }
+        }
+        Map<String, String> result = new HashMap<>(keys.size(), 1F);
+        serviceKeys.forEach((service, value) -> service.getSnapshot().findLatest(value).forEach((key, entry) -> result.putIfAbsent(key, getValue(entry))));
+        legacyServiceKeys.forEach((service, value) -> service.getSnapshot().findLatest(value).forEach((key, entry) -> result.putIfAbsent(key, getValue(entry))));
+        metricsCollector.recordLatency(NacosOperationType.BATCH_QUERY, System.nanoTime() - startNanos);
+        return result;
+    }
+    
+    private String getValue(final InstanceEntry entry) {
+        if (!entry.isConfigStored()) {
+            return entry.getValue();
+        }
+        try {
+            return configValueStore.load(entry.getKey(), entry.getValue());
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
         }
     }
     
+    private String getRemovedValue(final InstanceEntry entry) {
+        return entry.isConfigStored() ? configValueStore.findCachedValue(entry.getKey(), entry.getValue()).orElse("") : entry.getValue();
+    }
+    
     @Override
     public List<String> getChildrenKeys(final String key) {
+        long startNanos = System.nanoTime();
+        Collection<String> result = new TreeSet<>(Comparator.reverseOrder());
+        for (ServiceMetaData each : getCoveringServices(key)) {
+            result.addAll(each.getSnapshot().getChildrenKeys(key));
+        }
+        metricsCollector.recordLatency(NacosOperationType.GET_CHILDREN_KEYS, System.nanoTime() - startNanos);
+        return new ArrayList<>(result);
+    }
+    
+    /**
+     * Fetch values of children of key from Nacos server instead of snapshot.
+     *
+     * @param key key
+     * @return values of children keyed by children names
+     */
+    public Map<String, String> fetchChildren(final String key) {
+        Map<String, String> result = new HashMap<>();
         try {
-            Stream<String> concatKeys = Stream.empty();
-            for (ServiceMetaData each : serviceController.getAllServices()) {
-                Stream<String> keys = findExistedInstance(each.isEphemeral()).stream()
-                        .map(instance -> {
-                            String fullPath = NacosMetaDataUtils.getKey(instance);
-                            if (fullPath.startsWith(key + PATH_SEPARATOR)) {
-                                String pathWithoutPrefix = fullPath.substring((key + PATH_SEPARATOR).length());
-                                return pathWithoutPrefix.contains(PATH_SEPARATOR) ? pathWithoutPrefix.substring(0, pathWithoutPrefix.indexOf(PATH_SEPARATOR)) : pathWithoutPrefix;
-                            }
-                            return null;
-                        }).filter(Objects::nonNull);
-                concatKeys = Stream.concat(concatKeys, keys);
-            }
-            return concatKeys.distinct().sorted(Comparator.reverseOrder()).collect(Collectors.toList());
+            for (ServiceMetaData each : getCoveringServices(key)) {
+                InstanceSnapshot snapshot = new InstanceSnapshot();
+                snapshot.refresh(getAllInstances(each));
+                for (String child : snapshot.getChildrenKeys(key)) {
+                    snapshot.findLatest(key + PATH_SEPARATOR + child).ifPresent(entry -> result.put(child, getValue(entry)));
+                }
+            }
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
         }
+        return result;
     }
     
     @Override
     public boolean isExisted(final String key) {
-        return false;
+        return getReadableServices(key).stream().anyMatch(each -> !each.getSnapshot().find(key).isEmpty());
     }
     
     @Override
     public void persist(final String key, final String value) {
+        long startNanos = System.nanoTime();
         try {
-            Preconditions.checkNotNull(value, "Value can not be null");
-            Optional<Instance> instance = findExistedInstance(key, false).stream().max(Comparator.comparing(NacosMetaDataUtils::getTimestamp));
-            if (instance.isPresent()) {
-                update(instance.get(), value);
-            } else {
-                put(key, value, false);
-            }
+            write(key, () -> doPersist(key, value));
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.PERSIST, System.nanoTime() - startNanos);
         }
     }
     
+    /**
+     * Persist data asynchronously.
+     *
+     * @param key key of data
+     * @param value value of data
+     * @return future which completes when the data is available
+     */
+    public CompletableFuture<Void> persistAsync(final String key, final String value) {
+        return writeAsync(NacosOperationType.PERSIST, key, () -> doPersist(key, value));
+    }
+    
+    private Collection<KeyValue> doPersist(final String key, final String value) throws NacosException {
+        Preconditions.checkNotNull(value, "Value can not be null");
+        waitReconciled();
+        Optional<InstanceEntry> entry = getService(key, false).getSnapshot().findLatest(key);
+        return entry.isPresent() ? update(entry.get(), value) : put(key, value, false);
+    }
+    
     @Override
     public void update(final String key, final String value) {
-        // TODO
-    }
-    
-    private void update(final Instance instance, final String value) throws NacosException {
-        Map<String, String> metaDataMap = instance.getMetadata();
-        String key = NacosMetaDataUtils.getKey(instance);
-        metaDataMap.put(key, value);
-        metaDataMap.put(NacosMetaDataUtils.UTC_ZONE_OFFSET.toString(), String.valueOf(NacosMetaDataUtils.getTimestamp()));
-        instance.setMetadata(metaDataMap);
-        ServiceMetaData persistentService = serviceController.getPersistentService();
-        client.registerInstance(persistentService.getServiceName(), instance);
-        Collection<KeyValue> keyValues = new LinkedList<>();
-        keyValues.add(new KeyValue(key, value, instance.isEphemeral()));
-        waitValue(keyValues);
-    }
-    
-    private void put(final String key, final String value, final boolean ephemeral) throws NacosException {
-        final Collection<KeyValue> keyValues = buildParentPath(key);
-        ServiceMetaData serviceMetaData = serviceController.getService(ephemeral);
-        Instance instance = new Instance();
-        instance.setIp(serviceMetaData.getIp());
-        instance.setPort(serviceMetaData.getPort());
-        instance.setEphemeral(ephemeral);
-        Map<String, String> metadataMap = new HashMap<>(5, 1F);
-        if (ephemeral) {
-            fillEphemeralMetaData(metadataMap);
-        }
-        metadataMap.put(key, value);
-        metadataMap.put(NacosMetaDataUtils.UTC_ZONE_OFFSET.toString(), String.valueOf(NacosMetaDataUtils.getTimestamp()));
-        instance.setMetadata(metadataMap);
-        client.registerInstance(serviceMetaData.getServiceName(), instance);
-        keyValues.add(new KeyValue(key, value, ephemeral));
-        waitValue(keyValues);
-    }
-    
-    private Collection<KeyValue> buildParentPath(final String key) throws NacosException {
-        Collection<KeyValue> result = new LinkedList<>();
-        StringBuilder parentPath = new StringBuilder();
-        String[] partPath = key.split(PATH_SEPARATOR);
-        for (int index = 1; index < partPath.length - 1; index++) {
-            String path = parentPath.append(PATH_SEPARATOR).append(partPath[index]).toString();
-            if (findExistedInstance(path, false).isEmpty()) {
-                result.addAll(build(path));
+        long startNanos = System.nanoTime();
+        try {
+            Preconditions.checkNotNull(value, "Value can not be null");
+            write(key, () -> doUpdate(key, value));
+        } catch (final NacosException ex) {
+            throw new ClusterRepositoryPersistException(ex);
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.UPDATE, System.nanoTime() - startNanos);
+        }
+    }
+    
+    private Collection<KeyValue> doUpdate(final String key, final String value) throws NacosException {
+        waitReconciled();
+        for (ServiceMetaData each : getServices(key)) {
+            Optional<InstanceEntry> entry = each.getSnapshot().findLatest(key);
+            if (entry.isPresent()) {
+                return update(entry.get(), value);
             }
         }
+        for (ServiceMetaData each : getLegacyServices(key)) {
+            Optional<InstanceEntry> entry = each.getSnapshot().findLatest(key);
+            if (entry.isPresent()) {
+                return put(key, value, entry.get().isEphemeral());
+            }
+        }
+        return Collections.emptyList();
+    }
+    
+    private Collection<KeyValue> update(final InstanceEntry entry, final String value) throws NacosException {
+        ServiceMetaData service = getService(entry.getKey(), entry.isEphemeral());
+        NacosMetaDataUtils.observeVersion(entry.getVersion());
+        Collection<InstanceEntry> preEntries = service.getSnapshot().find(entry.getKey());
+        if (isPackable(value, entry.isEphemeral())) {
+            Collection<InstanceEntry> stalePreEntries = preEntries.stream().filter(each -> !each.isPacked()).collect(Collectors.toList());
+            putPacked(service, entry.getKey(), value);
+            if (!stalePreEntries.isEmpty()) {
+                deregister(service, stalePreEntries);
+            }
+        } else {
+            updateUnpacked(service, entry, value, preEntries);
+        }
+        removeConfigValuesLater(preEntries, NacosMetaDataUtils.digest(value));
+        Collection<KeyValue> result = new LinkedList<>();
+        result.add(new KeyValue(entry.getKey(), value, entry.isEphemeral()));
         return result;
     }
     
-    private Collection<KeyValue> build(final String key) throws NacosException {
+    private void updateUnpacked(final ServiceMetaData service, final InstanceEntry entry, final String value, final Collection<InstanceEntry> preEntries) throws NacosException {
+        List<Map<String, String>> metadataMaps = createMetaDataMaps(entry.getKey(), value, entry.isEphemeral());
+        if (!entry.isPacked() && 1 == metadataMaps.size() && preEntries.stream().allMatch(each -> 1 == each.getChunkCount())) {
+            Instance instance = createInstance(entry.getInstance().getIp(), entry.getInstance().getPort(), entry.isEphemeral(), metadataMaps.get(0));
+            registerInstance(service, instance);
+            service.getListener().register(Collections.singleton(instance), getPendingExpireMillis());
+        } else {
+            register(service, metadataMaps, entry.isEphemeral());
+            deregister(service, preEntries);
+        }
+    }
+    
+    private Collection<KeyValue> put(final String key, final String value, final boolean ephemeral) throws NacosException {
+        Collection<String> missedParentPaths = findMissedParentPaths(key);
         Collection<KeyValue> result = new LinkedList<>();
-        if (findExistedInstance(key, false).isEmpty()) {
-            Instance instance = new Instance();
-            ServiceMetaData persistentService = serviceController.getPersistentService();
-            instance.setIp(persistentService.getIp());
-            instance.setPort(persistentService.getPort());
-            instance.setEphemeral(false);
-            Map<String, String> metaDataMap = new HashMap<>(2, 1F);
-            metaDataMap.put(key, "");
-            metaDataMap.put(NacosMetaDataUtils.UTC_ZONE_OFFSET.toString(), String.valueOf(NacosMetaDataUtils.getTimestamp()));
-            instance.setMetadata(metaDataMap);
-            client.registerInstance(persistentService.getServiceName(), instance);
-            result.add(new KeyValue(key, "", false));
+        for (String each : missedParentPaths) {
+            result.add(register(each, "", false));
+        }
+        result.add(register(key, value, ephemeral));
+        return result;
+    }
+    
+    private Collection<String> findMissedParentPaths(final String key) {
+        LinkedList<String> result = new LinkedList<>();
+        String path = getParentPath(key);
+        while (!path.isEmpty() && findExistedInstance(path, false).isEmpty()) {
+            result.addFirst(path);
+            path = getParentPath(path);
+        }
+        return result;
+    }
+    
+    private String getParentPath(final String key) {
+        int index = key.lastIndexOf(PATH_SEPARATOR);
+        return index > 0 ? key.substring(0, index) : "";
+    }
+    
+    private KeyValue register(final String key, final String value, final boolean ephemeral) throws NacosException {
+        ServiceMetaData service = getService(key, ephemeral);
+        if (isPackable(value, ephemeral)) {
+            putPacked(service, key, value);
+        } else {
+            register(service, createMetaDataMaps(key, value, ephemeral), ephemeral);
+        }
+        return new KeyValue(key, value, ephemeral);
+    }
+    
+    private boolean isPackable(final String value, final boolean ephemeral) {
+        int compressionThreshold = nacosProps.getValue(NacosPropertyKey.VALUE_COMPRESSION_THRESHOLD);
+        return ephemeral && getPackCount() > 0 && (compressionThreshold <= 0 || value.length() <= compressionThreshold);
+    }
+    
+    private int getPackCount() {
+        return nacosProps.getValue(NacosPropertyKey.EPHEMERAL_PACK_COUNT);
+    }
+    
+    private int getPackSlot(final String key) {
+        return Math.floorMod(key.hashCode(), getPackCount());
+    }
+    
+    private void putPacked(final ServiceMetaData service, final String key, final String value) throws NacosException {
+        EphemeralPack pack = service.getEphemeralPack(getPackSlot(key));
+        synchronized (pack) {
+            reconcilePack(service, pack);
+            pack.getPackedValues().put(key, InstanceEntry.getPackedValue(NacosMetaDataUtils.nextVersion(), value));
+            registerPack(service, pack);
+        }
+    }
+    
+    private void registerPack(final ServiceMetaData service, final EphemeralPack pack) throws NacosException {
+        if (pack.getPackedValues().isEmpty()) {
+            if (null != pack.getInstance()) {
+                deregister(service, pack.getInstance());
+                service.getListener().deregister(Collections.singleton(pack.getInstance()), getPendingExpireMillis());
+                pack.setInstance(null);
+            }
+            return;
+        }
+        Map<String, String> metadataMap = new HashMap<>(pack.getPackedValues().size() + 5, 1F);
+        fillEphemeralMetaData(metadataMap);
+        metadataMap.put(NacosMetaDataUtils.PACKED_KEY, Boolean.TRUE.toString());
+        metadataMap.putAll(createVersionMetaData());
+        metadataMap.putAll(pack.getPackedValues());
+        int port = null == pack.getInstance() ? service.getPort() : pack.getInstance().getPort();
+        Instance instance = createInstance(service.getIp(), port, true, metadataMap);
+        registerInstance(service, instance);
+        service.getListener().register(Collections.singleton(instance), getPendingExpireMillis());
+        pack.setInstance(instance);
+    }
+    
+    private void removePacked(final ServiceMetaData service, final EphemeralPack pack, final Collection<String> keys) throws NacosException {
+        synchronized (pack) {
+            reconcilePack(service, pack);
+            pack.getPackedValues().keySet().removeAll(keys);
+            registerPack(service, pack);
+        }
+    }
+    
+    private void reconcilePack(final ServiceMetaData service, final EphemeralPack pack) {
+        if (null != pack.getInstance()) {
+            service.getSnapshot().findInstance(pack.getInstance().toInetAddr()).ifPresent(pack::reconcile);
+        }
+    }
+    
+    private void register(final ServiceMetaData service, final Collection<Map<String, String>> metadataMaps, final boolean ephemeral) throws NacosException {
+        Collection<Instance> instances = new LinkedList<>();
+        for (Map<String, String> each : metadataMaps) {
+            Instance instance = createInstance(service.getIp(), service.getPort(), ephemeral, each);
+            registerInstance(service, instance);
+            instances.add(instance);
+        }
+        service.getListener().register(instances, getPendingExpireMillis());
+    }
+    
+    private void registerInstance(final ServiceMetaData service, final Instance instance) throws NacosException {
+        long startNanos = System.nanoTime();
+        client.registerInstance(service.getServiceName(), instance);
+        metricsCollector.recordLatency(NacosOperationType.REGISTER_INSTANCE, System.nanoTime() - startNanos);
+    }
+    
+    private Instance createInstance(final String ip, final int port, final boolean ephemeral, final Map<String, String> metadataMap) {
+        Instance result = new Instance();
+        result.setIp(ip);
+        result.setPort(port);
+        result.setEphemeral(ephemeral);
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private List<Map<String, String>> createMetaDataMaps(final String key, final String value, final boolean ephemeral) throws NacosException {
+        if (!ephemeral && null != configValueStore) {
+            configValueStore.publish(key, value);
+            Map<String, String> metadataMap = new HashMap<>(4, 1F);
+            metadataMap.put(key, NacosMetaDataUtils.digest(value));
+            metadataMap.putAll(createVersionMetaData());
+            metadataMap.put(NacosMetaDataUtils.STORAGE_KEY, NacosMetaDataUtils.CONFIG_STORAGE);
+            return Collections.singletonList(metadataMap);
+        }
+        String storedValue = value;
+        boolean compressed = false;
+        int compressionThreshold = nacosProps.getValue(NacosPropertyKey.VALUE_COMPRESSION_THRESHOLD);
+        if (compressionThreshold > 0 && value.length() > compressionThreshold) {
+            String compressedValue = NacosMetaDataUtils.compress(value);
+            if (compressedValue.length() < value.length()) {
+                storedValue = compressedValue;
+                compressed = true;
+            }
+        }
+        int chunkSize = nacosProps.getValue(NacosPropertyKey.VALUE_CHUNK_SIZE);
+        int chunkCount = chunkSize > 0 ? Math.max(1, (storedValue.length() + chunkSize - 1) / chunkSize) : 1;
+        Map<String, String> versionMetaData = createVersionMetaData();
+        List<Map<String, String>> result = new ArrayList<>(chunkCount);
+        for (int i = 0; i < chunkCount; i++) {
+            Map<String, String> metadataMap = new HashMap<>(8, 1F);
+            if (ephemeral) {
+                fillEphemeralMetaData(metadataMap);
+            }
+            metadataMap.put(key, chunkCount > 1 ? storedValue.substring(i * chunkSize, Math.min(storedValue.length(), (i + 1) * chunkSize)) : storedValue);
+            metadataMap.putAll(versionMetaData);
+            if (compressed) {
+                metadataMap.put(NacosMetaDataUtils.ENCODING_KEY, NacosMetaDataUtils.GZIP_ENCODING);
+            }
+            if (chunkCount > 1) {
+                metadataMap.put(NacosMetaDataUtils.CHUNK_KEY, InstanceEntry.getChunk(i, chunkCount));
+            }
+            result.add(metadataMap);
+        }
+        return result;
+    }
+    
+    private Map<String, String> createVersionMetaData() {
+        Map<String, String> result = new HashMap<>(2, 1F);
+        result.put(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY, String.valueOf(NacosMetaDataUtils.nextLegacyTimestamp()));
+        boolean hybridLogicalClockVersion = nacosProps.getValue(NacosPropertyKey.HYBRID_LOGICAL_CLOCK_VERSION);
+        if (hybridLogicalClockVersion) {
+            result.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(NacosMetaDataUtils.nextVersion()));
         }
         return result;
     }
@@ -292,62 +851,245 @@ public final class NacosRepository implements ClusterPersistRepository {
     
     @Override
     public void delete(final String key) {
+        long startNanos = System.nanoTime();
         try {
-            for (ServiceMetaData each : serviceController.getAllServices()) {
-                Collection<Instance> instances = findExistedInstance(each.isEphemeral()).stream()
-                        .filter(instance -> {
-                            String fullPath = NacosMetaDataUtils.getKey(instance);
-                            return fullPath.startsWith(key + PATH_SEPARATOR) || key.equals(fullPath);
-                        })
-                        .sorted(Comparator.comparing(NacosMetaDataUtils::getKey).reversed()).collect(Collectors.toList());
-                Collection<KeyValue> keyValues = new LinkedList<>();
-                for (Instance instance : instances) {
-                    client.deregisterInstance(each.getServiceName(), instance);
-                    keyValues.add(new KeyValue(NacosMetaDataUtils.getKey(instance), null, each.isEphemeral()));
+            write(key, () -> doDelete(key));
+        } catch (final NacosException ex) {
+            throw new ClusterRepositoryPersistException(ex);
+        } finally {
+            metricsCollector.recordLatency(NacosOperationType.DELETE, System.nanoTime() - startNanos);
+        }
+    }
+    
+    /**
+     * Delete data asynchronously.
+     *
+     * @param key key of data
+     * @return future which completes when the data is deleted
+     */
+    public CompletableFuture<Void> deleteAsync(final String key) {
+        return writeAsync(NacosOperationType.DELETE, key, () -> doDelete(key));
+    }
+    
+    private Collection<KeyValue> doDelete(final String key) throws NacosException {
+        waitReconciled();
+        Collection<KeyValue> result = new LinkedList<>();
+        for (ServiceMetaData each : getCoveringServices(key)) {
+            Map<Integer, List<InstanceEntry>> depthEntries = each.getSnapshot().findAll().stream()
+                    .filter(entry -> entry.getKey().startsWith(key + PATH_SEPARATOR) || key.equals(entry.getKey()))
+                    .collect(Collectors.groupingBy(entry -> getDepth(entry.getKey()), () -> new TreeMap<Integer, List<InstanceEntry>>(Comparator.reverseOrder()), Collectors.toList()));
+            for (List<InstanceEntry> entries : depthEntries.values()) {
+                deregister(each, entries);
+                removeConfigValuesLater(entries, "");
+                for (InstanceEntry entry : entries) {
+                    result.add(new KeyValue(entry.getKey(), null, each.isEphemeral()));
                 }
-                waitValue(keyValues);
             }
+        }
+        return result;
+    }
+    
+    private void removeConfigValuesLater(final Collection<InstanceEntry> entries, final String retainedDigest) {
+        for (InstanceEntry each : entries) {
+            if (each.isConfigStored() && !retainedDigest.equals(each.getValue())) {
+                confirmExecutor.schedule(() -> removeConfigValue(each), getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+    
+    private void removeConfigValue(final InstanceEntry entry) {
+        try {
+            configValueStore.remove(entry.getKey(), entry.getValue());
         } catch (final NacosException ex) {
-            throw new ClusterRepositoryPersistException(ex);
+            log.warn("Failed to remove config value of key `{}`", entry.getKey(), ex);
+        }
+    }
+    
+    private int getDepth(final String key) {
+        int result = 0;
+        for (int i = key.indexOf(PATH_SEPARATOR); i >= 0; i = key.indexOf(PATH_SEPARATOR, i + 1)) {
+            result++;
+        }
+        return result;
+    }
+    
+    private void deregister(final ServiceMetaData service, final Collection<InstanceEntry> entries) throws NacosException {
+        Map<Boolean, List<InstanceEntry>> ownPackedEntries = entries.stream().collect(Collectors.partitioningBy(each -> each.isPacked() && service.findEphemeralPack(each.getInstance()).isPresent()));
+        Map<String, Instance> instances = new LinkedHashMap<>();
+        ownPackedEntries.get(false).forEach(each -> instances.putIfAbsent(each.getInstance().toInetAddr(), each.getInstance()));
+        if (1 == instances.size()) {
+            deregister(service, instances.values().iterator().next());
+        } else if (!instances.isEmpty()) {
+            deregisterInParallel(service, instances.values());
+        }
+        if (!instances.isEmpty()) {
+            service.getListener().deregister(instances.values(), getPendingExpireMillis());
+        }
+        Map<String, List<InstanceEntry>> inetAddrPackedEntries = ownPackedEntries.get(true).stream().collect(Collectors.groupingBy(each -> each.getInstance().toInetAddr()));
+        for (List<InstanceEntry> each : inetAddrPackedEntries.values()) {
+            removePacked(service, service.findEphemeralPack(each.get(0).getInstance()).get(), each.stream().map(InstanceEntry::getKey).collect(Collectors.toSet()));
+        }
+    }
+    
+    private void deregisterInParallel(final ServiceMetaData service, final Collection<Instance> instances) {
+        CompletableFuture<?>[] futures = instances.stream().map(each -> CompletableFuture.runAsync(() -> {
+            try {
+                deregister(service, each);
+            } catch (final NacosException ex) {
+                throw new ClusterRepositoryPersistException(ex);
+            }
+        }, deleteExecutor)).toArray(CompletableFuture[]::new);
+        try {
+            CompletableFuture.allOf(futures).join();
+        } catch (final CompletionException ex) {
+            throw ex.getCause() instanceof RuntimeException ? (RuntimeException) ex.getCause() : ex;
+        }
+    }
+    
+    private void deregister(final ServiceMetaData service, final Instance instance) throws NacosException {
+        long startNanos = System.nanoTime();
+        client.deregisterInstance(service.getServiceName(), instance);
+        metricsCollector.recordLatency(NacosOperationType.DEREGISTER_INSTANCE, System.nanoTime() - startNanos);
+        service.releasePort(instance.getIp(), instance.getPort());
+    }
+    
+    private long getPendingExpireMillis() {
+        return System.currentTimeMillis() + getWaitTimeoutMillis();
+    }
+    
+    private long getWaitTimeoutMillis() {
+        long retryIntervalMilliseconds = nacosProps.getValue(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS);
+        int maxRetries = nacosProps.getValue(NacosPropertyKey.MAX_RETRIES);
+        return retryIntervalMilliseconds << (maxRetries + 1);
+    }
+    
+    private void write(final String key, final NacosWriter writer) throws NacosException {
+        CompletableFuture<Void> current = new CompletableFuture<>();
+        CompletableFuture<Void> previous = keyWrites.put(key, current);
+        try {
+            if (null != previous) {
+                previous.join();
+            }
+            waitValue(writeLocked(key, writer));
+        } finally {
+            keyWrites.remove(key, current);
+            current.complete(null);
         }
     }
     
-    private Collection<Instance> findExistedInstance(final String key, final boolean ephemeral) throws NacosException {
-        return client.getAllInstances(serviceController.getService(ephemeral).getServiceName(), false).stream()
-                .filter(each -> Objects.equals(key, NacosMetaDataUtils.getKey(each))).collect(Collectors.toList());
+    private CompletableFuture<Void> writeAsync(final NacosOperationType operationType, final String key, final NacosWriter writer) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<Void> current = new CompletableFuture<>();
+        CompletableFuture<Void> previous = keyWrites.put(key, current);
+        CompletableFuture<Void> result = (null == previous ? CompletableFuture.<Void>completedFuture(null) : previous).thenApplyAsync(unused -> {
+            try {
+                return confirmAsync(writeLocked(key, writer));
+            } catch (final NacosException ex) {
+                throw new ClusterRepositoryPersistException(ex);
+            } finally {
+                keyWrites.remove(key, current);
+                current.complete(null);
+            }
+        }, writeExecutor).thenCompose(Function.identity());
+        asyncWrites.add(result);
+        return result.whenComplete((unused, ex) -> {
+            asyncWrites.remove(result);
+            metricsCollector.recordLatency(operationType, System.nanoTime() - startNanos);
+        });
     }
     
-    private Collection<Instance> findExistedInstance(final boolean ephemeral) throws NacosException {
-        return client.getAllInstances(serviceController.getService(ephemeral).getServiceName(), false);
+    private Collection<KeyValue> writeLocked(final String key, final NacosWriter writer) throws NacosException {
+        while (true) {
+            Collection<String> paths = findMissedParentPaths(key);
+            paths.add(key);
+            Iterable<Lock> locks = pathLocks.bulkGet(paths);
+            locks.forEach(Lock::lock);
+            try {
+                if (paths.containsAll(findMissedParentPaths(key))) {
+                    return writer.write();
+                }
+            } finally {
+                locks.forEach(Lock::unlock);
+            }
+        }
+    }
+    
+    private Collection<InstanceEntry> findExistedInstance(final String key, final boolean ephemeral) {
+        Collection<InstanceEntry> result = getService(key, ephemeral).getSnapshot().find(key);
+        if (result.isEmpty()) {
+            for (ServiceMetaData each : getLegacyServices(key)) {
+                if (ephemeral == each.isEphemeral()) {
+                    return each.getSnapshot().find(key);
+                }
+            }
+        }
+        return result;
     }
     
-    @SneakyThrows(InterruptedException.class)
     private void waitValue(final Collection<KeyValue> keyValues) throws NacosException {
-        if (!isAvailable(keyValues)) {
-            long retryIntervalMilliseconds = nacosProps.getValue(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS);
-            int maxRetries = nacosProps.getValue(NacosPropertyKey.MAX_RETRIES);
-            for (int retry = 0; retry < maxRetries; retry++) {
-                Thread.sleep(getSleepTimeMs(retry, retryIntervalMilliseconds));
-                if (isAvailable(keyValues)) {
-                    return;
+        Collection<CompletableFuture<Void>> futures = expect(keyValues);
+        CompletableFuture<Void> future = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        long retryIntervalMilliseconds = nacosProps.getValue(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS);
+        int maxRetries = nacosProps.getValue(NacosPropertyKey.MAX_RETRIES);
+        for (int retry = 0; retry <= maxRetries; retry++) {
+            if (isDone(future, getSleepTimeMs(retry, retryIntervalMilliseconds)) || isAvailable(keyValues)) {
+                return;
+            }
+            metricsCollector.recordWaitValueRetry();
+        }
+        futures.forEach(each -> each.cancel(false));
+        metricsCollector.recordWaitValueTimeout();
+        throw new NacosException(NacosException.RESOURCE_NOT_FOUND, "Wait value availability timeout exceeded");
+    }
+    
+    private CompletableFuture<Void> confirmAsync(final Collection<KeyValue> keyValues) {
+        Collection<CompletableFuture<Void>> futures = expect(keyValues);
+        CompletableFuture<Void> result = CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]));
+        ScheduledFuture<?> timeoutFuture = confirmExecutor.schedule(() -> {
+            metricsCollector.recordWaitValueTimeout();
+            result.completeExceptionally(new ClusterRepositoryPersistException(new NacosException(NacosException.RESOURCE_NOT_FOUND, "Wait value availability timeout exceeded")));
+            futures.forEach(each -> each.cancel(false));
+        }, getWaitTimeoutMillis(), TimeUnit.MILLISECONDS);
+        result.whenComplete((unused, ex) -> timeoutFuture.cancel(false));
+        return result;
+    }
+    
+    private Collection<CompletableFuture<Void>> expect(final Collection<KeyValue> keyValues) {
+        return keyValues.stream().collect(Collectors.groupingBy(each -> getService(each.getKey(), each.isEphemeral()))).entrySet().stream()
+                .map(entry -> entry.getKey().getSnapshot().expect(entry.getValue())).collect(Collectors.toList());
+    }
+    
+    private void confirmExpectedValues() {
+        for (ServiceMetaData each : serviceController.getAllServices()) {
+            if (null != each.getListener() && (each.getSnapshot().isExpecting() || each.getSnapshot().hasPendingInstances())) {
+                try {
+                    each.getListener().refresh(getAllInstances(each));
+                } catch (final NacosException ignored) {
                 }
             }
-            throw new NacosException(NacosException.RESOURCE_NOT_FOUND, "Wait value availability timeout exceeded");
+        }
+    }
+    
+    @SneakyThrows({InterruptedException.class, ExecutionException.class})
+    private boolean isDone(final Future<Void> future, final long timeoutMilliseconds) {
+        try {
+            future.get(timeoutMilliseconds, TimeUnit.MILLISECONDS);
+            return true;
+        } catch (final TimeoutException ignored) {
+            return false;
         }
     }
     
     private boolean isAvailable(final Collection<KeyValue> keyValues) throws NacosException {
-        Map<Boolean, List<KeyValue>> keyValueMap = keyValues.stream().collect(Collectors.groupingBy(KeyValue::isEphemeral));
-        for (Entry<Boolean, List<KeyValue>> entry : keyValueMap.entrySet()) {
-            ServiceMetaData service = serviceController.getService(entry.getKey());
-            Map<String, List<Instance>> instanceMap = client.getAllInstances(service.getServiceName(), false).stream().collect(Collectors.groupingBy(NacosMetaDataUtils::getKey));
-            keyValues.removeIf(keyValue -> {
-                String key = keyValue.getKey();
-                String value = keyValue.getValue();
-                return instanceMap.containsKey(key) ? instanceMap.get(key).stream().anyMatch(each -> Objects.equals(NacosMetaDataUtils.getValue(each), value)) : null == value;
-            });
+        Map<ServiceMetaData, List<KeyValue>> keyValueMap = keyValues.stream().collect(Collectors.groupingBy(each -> getService(each.getKey(), each.isEphemeral())));
+        for (Entry<ServiceMetaData, List<KeyValue>> entry : keyValueMap.entrySet()) {
+            ServiceMetaData service = entry.getKey();
+            service.getListener().refresh(getAllInstances(service));
+            if (!entry.getValue().stream().allMatch(service.getSnapshot()::isAvailable)) {
+                return false;
+            }
         }
-        return keyValues.isEmpty();
+        return true;
     }
     
     private long getSleepTimeMs(final int retryCount, final long baseSleepTimeMs) {
@@ -356,8 +1098,24 @@ public final class NacosRepository implements ClusterPersistRepository {
     
     @Override
     public void close() {
+        asyncWrites.forEach(each -> each.completeExceptionally(new ClusterRepositoryPersistException(new NacosException(NacosException.CLIENT_DISCONNECT, "Repository is closed"))));
+        writeExecutor.shutdown();
+        deleteExecutor.shutdown();
+        confirmExecutor.shutdownNow();
+        listenerExecutor.shutdown(0L);
         try {
+            for (ServiceMetaData each : serviceController.getAllServices()) {
+                if (null != each.getListener()) {
+                    unsubscribe(each, each.getSubscriptionCount());
+                }
+                if (each.isReconciled()) {
+                    saveSnapshotFile(each);
+                }
+            }
             client.shutDown();
+            if (null != configValueStore) {
+                configValueStore.close();
+            }
         } catch (final NacosException ex) {
             throw new ClusterRepositoryPersistException(ex);
         }
@@ -367,4 +1125,10 @@ public final class NacosRepository implements ClusterPersistRepository {
     public String getType() {
         return "Nacos";
     }
+    
+    @FunctionalInterface
+    private interface NacosWriter {
+        
+        Collection<KeyValue> write() throws NacosException;
+    }
 }
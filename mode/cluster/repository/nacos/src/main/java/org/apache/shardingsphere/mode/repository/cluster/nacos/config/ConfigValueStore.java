@@ -0,0 +1,168 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.config;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import com.alibaba.nacos.api.exception.NacosException;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+
+/**
+ * Value store of Nacos config service, which keeps one immutable config per key and digest.
+ * 
+ * <p>Config of a digest is never changed after published, so the digest registered in instance always loads its own value
+ * even if a newer value of the same key is published meanwhile. Latest value of each key is cached by digest in a bounded cache,
+ * so a value is fetched from config service only once for each change. Empty value is not published, because config service
+ * does not keep empty configs.</p>
+ */
+@RequiredArgsConstructor
+public final class ConfigValueStore {
+    
+    private static final String GROUP = "shardingsphere";
+    
+    private static final String EMPTY_DIGEST = NacosMetaDataUtils.digest("");
+    
+    private static final int MAX_CACHED_VALUES = 10000;
+    
+    private final ConfigService configService;
+    
+    private final long timeoutMillis;
+    
+    private final long retryIntervalMillis;
+    
+    private final Cache<String, CachedValue> cachedValues = CacheBuilder.newBuilder().maximumSize(MAX_CACHED_VALUES).build();
+    
+    /**
+     * Publish value of key.
+     *
+     * @param key key
+     * @param value value
+     * @throws NacosException Nacos exception
+     */
+    public void publish(final String key, final String value) throws NacosException {
+        String digest = NacosMetaDataUtils.digest(value);
+        if (!value.isEmpty() && !configService.publishConfig(getDataId(key, digest), GROUP, value)) {
+            throw new NacosException(NacosException.SERVER_ERROR, String.format("Failed to publish config of key `%s`", key));
+        }
+        cachedValues.put(key, new CachedValue(digest, value));
+    }
+    
+    /**
+     * Load value of key, config is fetched again until it is found, since config service may not be updated yet.
+     *
+     * @param key key
+     * @param digest digest of expected value
+     * @return value
+     * @throws NacosException Nacos exception
+     */
+    @SneakyThrows(InterruptedException.class)
+    public String load(final String key, final String digest) throws NacosException {
+        Optional<String> cachedValue = findCachedValue(key, digest);
+        if (cachedValue.isPresent()) {
+            return cachedValue.get();
+        }
+        if (EMPTY_DIGEST.equals(digest)) {
+            return "";
+        }
+        long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            String result = Strings.nullToEmpty(configService.getConfig(getDataId(key, digest), GROUP, Math.max(1L, deadlineMillis - System.currentTimeMillis())));
+            if (digest.equals(NacosMetaDataUtils.digest(result))) {
+                cachedValues.put(key, new CachedValue(digest, result));
+                return result;
+            }
+            if (System.currentTimeMillis() + retryIntervalMillis > deadlineMillis) {
+                throw new NacosException(NacosException.RESOURCE_NOT_FOUND, String.format("Config of key `%s` with digest `%s` is not found", key, digest));
+            }
+            Thread.sleep(retryIntervalMillis);
+        }
+    }
+    
+    /**
+     * Find cached value of key.
+     *
+     * @param key key
+     * @param digest digest of expected value
+     * @return cached value
+     */
+    public Optional<String> findCachedValue(final String key, final String digest) {
+        CachedValue cachedValue = cachedValues.getIfPresent(key);
+        return null != cachedValue && cachedValue.digest.equals(digest) ? Optional.of(cachedValue.value) : Optional.empty();
+    }
+    
+    /**
+     * Remove value of key with digest, cached value of key is kept if it is newer.
+     *
+     * @param key key
+     * @param digest digest of removed value
+     * @throws NacosException Nacos exception
+     */
+    public void remove(final String key, final String digest) throws NacosException {
+        cachedValues.asMap().computeIfPresent(key, (unused, cachedValue) -> cachedValue.digest.equals(digest) ? null : cachedValue);
+        if (!EMPTY_DIGEST.equals(digest)) {
+            configService.removeConfig(getDataId(key, digest), GROUP);
+        }
+    }
+    
+    /**
+     * Close config service.
+     *
+     * @throws NacosException Nacos exception
+     */
+    public void close() throws NacosException {
+        configService.shutDown();
+    }
+    
+    /**
+     * Get data id of key, characters not allowed in data id are escaped as {@code _XX} of UTF-8 bytes.
+     *
+     * @param key key
+     * @return data id
+     */
+    public static String getDataId(final String key) {
+        StringBuilder result = new StringBuilder(key.length() + 16);
+        for (byte each : key.getBytes(StandardCharsets.UTF_8)) {
+            char ch = (char) (each & 0xFF);
+            if (ch >= 'a' && ch <= 'z' || ch >= 'A' && ch <= 'Z' || ch >= '0' && ch <= '9' || '-' == ch || '.' == ch) {
+                result.append(ch);
+            } else {
+                result.append(String.format("_%02X", each & 0xFF));
+            }
+        }
+        return result.toString();
+    }
+    
+    private static String getDataId(final String key, final String digest) {
+        return getDataId(key) + "." + digest;
+    }
+    
+    @RequiredArgsConstructor
+    private static final class CachedValue {
+        
+        private final String digest;
+        
+        private final String value;
+    }
+}
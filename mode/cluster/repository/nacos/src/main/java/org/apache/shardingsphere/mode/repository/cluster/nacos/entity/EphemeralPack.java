@@ -0,0 +1,66 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Ephemeral pack, which holds ephemeral keys of this compute node in one instance sharing one heartbeat.
+ * 
+ * <p>Only the owner node rewrites its packs. Deleting a packed key of other compute node deregisters the whole pack instance,
+ * so other keys packed with it are removed too, which fits clearing keys of departed compute nodes.</p>
+ */
+@Getter
+@Setter
+public final class EphemeralPack {
+    
+    private final Map<String, String> packedValues = new HashMap<>();
+    
+    private Instance instance;
+    
+    /**
+     * Judge whether pack is registered as instance.
+     *
+     * @param instance instance
+     * @return is registered as instance or not
+     */
+    public boolean isRegisteredAs(final Instance instance) {
+        return null != this.instance && this.instance.toInetAddr().equals(instance.toInetAddr());
+    }
+    
+    /**
+     * Reconcile packed values with pushed instance of pack, which is adopted if it is newer than the registered one.
+     *
+     * @param pushedInstance pushed instance of pack
+     */
+    public void reconcile(final Instance pushedInstance) {
+        if (null == instance || InstanceEntry.decodeVersion(pushedInstance) <= InstanceEntry.decodeVersion(instance)) {
+            return;
+        }
+        packedValues.clear();
+        for (InstanceEntry each : InstanceEntry.decodeAll(pushedInstance)) {
+            packedValues.put(each.getKey(), InstanceEntry.getPackedValue(each.getVersion(), each.getValue()));
+        }
+        instance = pushedInstance;
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import com.alibaba.nacos.api.exception.NacosException;
+import com.alibaba.nacos.api.naming.PreservedMetadataKeys;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Instance entry decoded from meta data of instance.
+ * 
+ * <p>Value of a decoded entry is the raw stored value, which may be compressed or be one chunk of the whole value.
+ * Use {@link #assemble(List)} to get the entry of the whole value.
+ * Value of an entry stored in config service is the digest of the value kept in config.</p>
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Getter
+public final class InstanceEntry {
+    
+    private static final String CHUNK_SEPARATOR = "/";
+    
+    private static final char PACKED_VALUE_SEPARATOR = ':';
+    
+    private final Instance instance;
+    
+    private final String key;
+    
+    private final String value;
+    
+    private final long version;
+    
+    private final boolean ephemeral;
+    
+    private final boolean compressed;
+    
+    private final boolean configStored;
+    
+    private final boolean packed;
+    
+    private final int chunkIndex;
+    
+    private final int chunkCount;
+    
+    /**
+     * Decode instance entry.
+     *
+     * @param instance instance
+     * @return decoded instance entry
+     */
+    @SneakyThrows(NacosException.class)
+    public static InstanceEntry decode(final Instance instance) {
+        String key = null;
+        String value = null;
+        String encodedVersion = null;
+        String legacyTimestamp = null;
+        String encoding = null;
+        String chunk = null;
+        String storage = null;
+        for (Entry<String, String> entry : instance.getMetadata().entrySet()) {
+            if (NacosMetaDataUtils.VERSION_KEY.equals(entry.getKey())) {
+                encodedVersion = entry.getValue();
+            } else if (NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY.equals(entry.getKey())) {
+                legacyTimestamp = entry.getValue();
+            } else if (NacosMetaDataUtils.ENCODING_KEY.equals(entry.getKey())) {
+                encoding = entry.getValue();
+            } else if (NacosMetaDataUtils.CHUNK_KEY.equals(entry.getKey())) {
+                chunk = entry.getValue();
+            } else if (NacosMetaDataUtils.STORAGE_KEY.equals(entry.getKey())) {
+                storage = entry.getValue();
+            } else if (null == key && !isPreservedKey(entry.getKey())) {
+                key = entry.getKey();
+                value = entry.getValue();
+            }
+        }
+        if (null == key) {
+            throw new NacosException(NacosException.RESOURCE_NOT_FOUND, "Failed to find key ");
+        }
+        long version = decodeVersion(encodedVersion, legacyTimestamp);
+        boolean compressed = NacosMetaDataUtils.GZIP_ENCODING.equals(encoding);
+        boolean configStored = NacosMetaDataUtils.CONFIG_STORAGE.equals(storage);
+        if (null == chunk) {
+            return new InstanceEntry(instance, key, value, version, instance.isEphemeral(), compressed, configStored, false, 0, 1);
+        }
+        int separatorIndex = chunk.indexOf(CHUNK_SEPARATOR);
+        return new InstanceEntry(instance, key, value, version, instance.isEphemeral(), compressed, configStored, false,
+                Integer.parseInt(chunk.substring(0, separatorIndex)), Integer.parseInt(chunk.substring(separatorIndex + 1)));
+    }
+    
+    /**
+     * Decode all instance entries, a packed instance holds entries of many keys.
+     *
+     * @param instance instance
+     * @return decoded instance entries
+     */
+    public static List<InstanceEntry> decodeAll(final Instance instance) {
+        if (!instance.getMetadata().containsKey(NacosMetaDataUtils.PACKED_KEY)) {
+            return Collections.singletonList(decode(instance));
+        }
+        List<InstanceEntry> result = new ArrayList<>(instance.getMetadata().size());
+        for (Entry<String, String> entry : instance.getMetadata().entrySet()) {
+            if (!isReservedKey(entry.getKey())) {
+                int separatorIndex = entry.getValue().indexOf(PACKED_VALUE_SEPARATOR);
+                result.add(new InstanceEntry(instance, entry.getKey(), entry.getValue().substring(separatorIndex + 1),
+                        NacosMetaDataUtils.decodeVersion(entry.getValue().substring(0, separatorIndex)), instance.isEphemeral(), false, false, true, 0, 1));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Decode version of instance.
+     *
+     * @param instance instance
+     * @return version
+     */
+    public static long decodeVersion(final Instance instance) {
+        return decodeVersion(instance.getMetadata().get(NacosMetaDataUtils.VERSION_KEY), instance.getMetadata().get(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY));
+    }
+    
+    private static long decodeVersion(final String encodedVersion, final String legacyTimestamp) {
+        if (null != encodedVersion) {
+            return NacosMetaDataUtils.decodeVersion(encodedVersion);
+        }
+        return null == legacyTimestamp ? 0L : NacosMetaDataUtils.decodeLegacyVersion(legacyTimestamp);
+    }
+    
+    /**
+     * Get meta data value of key in packed instance.
+     *
+     * @param version version of value
+     * @param value value
+     * @return packed meta data value
+     */
+    public static String getPackedValue(final long version, final String value) {
+        return NacosMetaDataUtils.encodeVersion(version) + PACKED_VALUE_SEPARATOR + value;
+    }
+    
+    private static boolean isReservedKey(final String metadataKey) {
+        return isPreservedKey(metadataKey) || NacosMetaDataUtils.VERSION_KEY.equals(metadataKey) || NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY.equals(metadataKey)
+                || NacosMetaDataUtils.ENCODING_KEY.equals(metadataKey) || NacosMetaDataUtils.CHUNK_KEY.equals(metadataKey)
+                || NacosMetaDataUtils.STORAGE_KEY.equals(metadataKey) || NacosMetaDataUtils.PACKED_KEY.equals(metadataKey);
+    }
+    
+    private static boolean isPreservedKey(final String metadataKey) {
+        return PreservedMetadataKeys.HEART_BEAT_INTERVAL.equals(metadataKey) || PreservedMetadataKeys.HEART_BEAT_TIMEOUT.equals(metadataKey)
+                || PreservedMetadataKeys.IP_DELETE_TIMEOUT.equals(metadataKey);
+    }
+    
+    /**
+     * Get chunk meta data value.
+     *
+     * @param chunkIndex chunk index
+     * @param chunkCount chunk count
+     * @return chunk meta data value
+     */
+    public static String getChunk(final int chunkIndex, final int chunkCount) {
+        return chunkIndex + CHUNK_SEPARATOR + chunkCount;
+    }
+    
+    /**
+     * Judge whether entry is plain, which is neither compressed nor chunked.
+     *
+     * @return is plain or not
+     */
+    public boolean isPlain() {
+        return !compressed && 1 == chunkCount;
+    }
+    
+    /**
+     * Judge whether entry holds value, value of entry stored in config service is compared by digest.
+     *
+     * @param value value
+     * @return matches or not
+     */
+    public boolean matches(final String value) {
+        return configStored ? null != value && this.value.equals(NacosMetaDataUtils.digest(value)) : Objects.equals(this.value, value);
+    }
+    
+    /**
+     * Assemble entries of the same write into entry of the whole value.
+     *
+     * @param entries entries of all chunks
+     * @return assembled entry, empty if any chunk is absent
+     */
+    public static Optional<InstanceEntry> assemble(final List<InstanceEntry> entries) {
+        InstanceEntry first = entries.get(0);
+        if (first.isPlain()) {
+            return Optional.of(first);
+        }
+        String[] chunks = new String[first.chunkCount];
+        for (InstanceEntry each : entries) {
+            if (each.chunkIndex < chunks.length) {
+                chunks[each.chunkIndex] = each.value;
+            }
+        }
+        if (Arrays.stream(chunks).anyMatch(Objects::isNull)) {
+            return Optional.empty();
+        }
+        String value = String.join("", chunks);
+        return Optional.of(new InstanceEntry(first.instance, first.key, first.compressed ? NacosMetaDataUtils.decompress(value) : value, first.version, first.ephemeral, false, first.configStored, first.packed, 0, 1));
+    }
+}
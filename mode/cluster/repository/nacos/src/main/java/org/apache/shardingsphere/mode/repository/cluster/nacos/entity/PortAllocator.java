@@ -0,0 +1,77 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import com.google.common.base.Preconditions;
+
+import java.util.BitSet;
+import java.util.Collection;
+
+/**
+ * Port allocator of instances with the same ip.
+ * 
+ * <p>Ports are allocated from {@code Integer.MIN_VALUE + 1} upwards, the lowest released port is always reused first.</p>
+ */
+public final class PortAllocator {
+    
+    private static final int MAX_INDEX = Integer.MAX_VALUE - 1;
+    
+    private final BitSet allocatedIndexes = new BitSet();
+    
+    private int lowestFreeIndex;
+    
+    public PortAllocator(final Collection<Integer> allocatedPorts) {
+        for (int each : allocatedPorts) {
+            int index = toIndex(each);
+            if (index >= 0) {
+                allocatedIndexes.set(index);
+            }
+        }
+        lowestFreeIndex = allocatedIndexes.nextClearBit(0);
+    }
+    
+    /**
+     * Allocate port.
+     * 
+     * @return allocated port
+     */
+    public synchronized int allocate() {
+        int index = allocatedIndexes.nextClearBit(lowestFreeIndex);
+        Preconditions.checkState(index >= 0 && index <= MAX_INDEX, "Specified cluster ip exceeded the maximum number of persisting");
+        allocatedIndexes.set(index);
+        lowestFreeIndex = index + 1;
+        return Integer.MIN_VALUE + 1 + index;
+    }
+    
+    /**
+     * Release port to be reused.
+     * 
+     * @param port port
+     */
+    public synchronized void release(final int port) {
+        int index = toIndex(port);
+        if (index >= 0) {
+            allocatedIndexes.clear(index);
+            lowestFreeIndex = Math.min(lowestFreeIndex, index);
+        }
+    }
+    
+    private int toIndex(final int port) {
+        return port < 0 && Integer.MIN_VALUE != port ? port - Integer.MIN_VALUE - 1 : -1;
+    }
+}
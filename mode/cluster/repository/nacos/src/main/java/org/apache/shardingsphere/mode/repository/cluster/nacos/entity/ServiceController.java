@@ -17,16 +17,22 @@
 
 package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
 
-import lombok.Getter;
-
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.Map;
-import java.util.function.Function;
+import java.util.Map.Entry;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * Service controller.
+ * 
+ * <p>Keys are partitioned by configured prefixes, each partition owns a pair of persistent and ephemeral services.
+ * Keys matching no prefix belong to the default partition.
+ * Keys stored before partitions are configured stay in the services of default partition, which are the legacy services of partitioned keys.</p>
  */
 public final class ServiceController {
     
@@ -34,13 +40,23 @@ public final class ServiceController {
     
     private static final String EPHEMERAL_SERVICE_NAME = "EPHEMERAL";
     
-    @Getter
-    private final ServiceMetaData persistentService = new ServiceMetaData(PERSISTENT_SERVICE_NAME, false);
+    private static final String DEFAULT_PARTITION_PREFIX = "";
+    
+    private static final String PATH_SEPARATOR = "/";
     
-    @Getter
-    private final ServiceMetaData ephemeralService = new ServiceMetaData(EPHEMERAL_SERVICE_NAME, true);
+    private final Map<String, Map<Boolean, ServiceMetaData>> partitionServiceMap = new LinkedHashMap<>();
     
-    private final Map<Boolean, ServiceMetaData> serviceMap = Stream.of(persistentService, ephemeralService).collect(Collectors.toMap(ServiceMetaData::isEphemeral, Function.identity()));
+    public ServiceController(final Collection<String> partitionPrefixes) {
+        partitionPrefixes.stream().distinct().sorted(Comparator.comparingInt(String::length).reversed()).forEach(each -> partitionServiceMap.put(each, createServices(each)));
+        partitionServiceMap.put(DEFAULT_PARTITION_PREFIX, createServices(DEFAULT_PARTITION_PREFIX));
+    }
+    
+    private Map<Boolean, ServiceMetaData> createServices(final String partitionPrefix) {
+        Map<Boolean, ServiceMetaData> result = new HashMap<>(2, 1F);
+        result.put(false, new ServiceMetaData(PERSISTENT_SERVICE_NAME + partitionPrefix, false));
+        result.put(true, new ServiceMetaData(EPHEMERAL_SERVICE_NAME + partitionPrefix, true));
+        return result;
+    }
     
     /**
      * Get all services.
@@ -48,16 +64,76 @@ public final class ServiceController {
      * @return all services
      */
     public Collection<ServiceMetaData> getAllServices() {
-        return serviceMap.values();
+        return partitionServiceMap.values().stream().flatMap(each -> each.values().stream()).collect(Collectors.toList());
+    }
+    
+    /**
+     * Get services of default partition.
+     * 
+     * @return services of default partition
+     */
+    public Collection<ServiceMetaData> getDefaultServices() {
+        return partitionServiceMap.get(DEFAULT_PARTITION_PREFIX).values();
     }
     
     /**
-     * Get service.
+     * Get services of partition which key belongs to.
      * 
+     * @param key key
+     * @return persistent service and ephemeral service
+     */
+    public Collection<ServiceMetaData> getServices(final String key) {
+        return getPartition(key).values();
+    }
+    
+    /**
+     * Get service of partition which key belongs to.
+     * 
+     * @param key key
      * @param ephemeral is ephemeral service
      * @return ephemeral service or persistent service
      */
-    public ServiceMetaData getService(final boolean ephemeral) {
-        return serviceMap.get(ephemeral);
+    public ServiceMetaData getService(final String key, final boolean ephemeral) {
+        return getPartition(key).get(ephemeral);
+    }
+    
+    /**
+     * Get legacy services which key may be stored in before partitions are configured.
+     * 
+     * @param key key
+     * @return services of default partition if key belongs to other partition, otherwise empty
+     */
+    public Collection<ServiceMetaData> getLegacyServices(final String key) {
+        Map<Boolean, ServiceMetaData> partition = getPartition(key);
+        Map<Boolean, ServiceMetaData> defaultPartition = partitionServiceMap.get(DEFAULT_PARTITION_PREFIX);
+        return partition == defaultPartition ? Collections.emptyList() : defaultPartition.values();
+    }
+    
+    /**
+     * Get services covering key and its descendants.
+     * 
+     * @param key key
+     * @return services of partition which key belongs to, its legacy services and partitions under key
+     */
+    public Collection<ServiceMetaData> getCoveringServices(final String key) {
+        Collection<ServiceMetaData> result = new LinkedList<>(getServices(key));
+        result.addAll(getLegacyServices(key));
+        String childPrefix = key.endsWith(PATH_SEPARATOR) ? key : key + PATH_SEPARATOR;
+        for (Entry<String, Map<Boolean, ServiceMetaData>> entry : partitionServiceMap.entrySet()) {
+            if (entry.getKey().startsWith(childPrefix)) {
+                result.addAll(entry.getValue().values());
+            }
+        }
+        return result;
+    }
+    
+    private Map<Boolean, ServiceMetaData> getPartition(final String key) {
+        for (Entry<String, Map<Boolean, ServiceMetaData>> entry : partitionServiceMap.entrySet()) {
+            String prefix = entry.getKey();
+            if (DEFAULT_PARTITION_PREFIX.equals(prefix) || key.equals(prefix) || key.startsWith(prefix + PATH_SEPARATOR)) {
+                return entry.getValue();
+            }
+        }
+        return partitionServiceMap.get(DEFAULT_PARTITION_PREFIX);
     }
 }
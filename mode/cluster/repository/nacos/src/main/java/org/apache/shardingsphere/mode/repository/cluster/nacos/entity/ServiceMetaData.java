@@ -17,13 +17,16 @@
 
 package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
 
-import com.google.common.base.Preconditions;
+import com.alibaba.nacos.api.naming.pojo.Instance;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import org.apache.shardingsphere.mode.repository.cluster.nacos.listener.NamingEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceSnapshot;
 
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service meta data.
@@ -37,20 +40,58 @@ public final class ServiceMetaData {
     
     private String ip;
     
-    private AtomicInteger port;
+    private PortAllocator portAllocator;
     
-    private NamingEventListener listener;
+    private volatile NamingEventListener listener;
+    
+    private volatile int subscriptionCount;
+    
+    private volatile boolean reconciled;
     
     private final boolean ephemeral;
     
+    private final InstanceSnapshot snapshot = new InstanceSnapshot();
+    
+    private final Map<Integer, EphemeralPack> ephemeralPacks = new ConcurrentHashMap<>();
+    
     /**
-     * Get incremental port.
+     * Get free port.
      * 
-     * @return incremental port
+     * @return free port
      */
     public int getPort() {
-        int result = port.incrementAndGet();
-        Preconditions.checkState(Integer.MIN_VALUE != result, "Specified cluster ip exceeded the maximum number of persisting");
-        return result;
+        return portAllocator.allocate();
+    }
+    
+    /**
+     * Release port of deregistered instance.
+     * 
+     * @param ip ip of instance
+     * @param port port of instance
+     */
+    public void releasePort(final String ip, final int port) {
+        if (this.ip.equals(ip)) {
+            portAllocator.release(port);
+        }
+    }
+    
+    /**
+     * Get ephemeral pack of slot.
+     * 
+     * @param slot slot of pack
+     * @return ephemeral pack
+     */
+    public EphemeralPack getEphemeralPack(final int slot) {
+        return ephemeralPacks.computeIfAbsent(slot, unused -> new EphemeralPack());
+    }
+    
+    /**
+     * Find ephemeral pack registered as instance.
+     * 
+     * @param instance instance
+     * @return found ephemeral pack
+     */
+    public Optional<EphemeralPack> findEphemeralPack(final Instance instance) {
+        return ephemeralPacks.values().stream().filter(each -> each.isRegisteredAs(instance)).findFirst();
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.listener;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.NacosMetricsCollector;
+
+import java.util.Queue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped executor of data changed event listeners.
+ * 
+ * <p>Events of the same listener are always executed by the same single-threaded stripe, so every listener receives events in notification order.
+ * Events are submitted in two steps: {@link #submit} only appends event to the ordered pending queue, so it is safe to call while holding monitors,
+ * and {@link #flush} hands pending events to stripes without blocking. Events left by a full stripe stay pending and are flushed by the stripe
+ * when it makes progress, events beyond capacity of the pending queue are dropped and recorded.
+ * Failure of loading event or executing listener is logged, so it does not break the stripe.</p>
+ */
+@Slf4j
+public final class ListenerExecutor {
+    
+    private final ThreadPoolExecutor[] stripes;
+    
+    private final NacosMetricsCollector metricsCollector;
+    
+    private final Queue<ListenerTask> pendingTasks;
+    
+    private final Lock flushLock = new ReentrantLock();
+    
+    private final AtomicInteger queueDepth = new AtomicInteger();
+    
+    public ListenerExecutor(final int stripeCount, final int queueCapacity, final NacosMetricsCollector metricsCollector) {
+        this.metricsCollector = metricsCollector;
+        pendingTasks = new LinkedBlockingQueue<>(queueCapacity);
+        stripes = new ThreadPoolExecutor[stripeCount];
+        ThreadFactory threadFactory = new ThreadFactoryBuilder().setDaemon(true).setNameFormat("nacos-listener-%d").build();
+        for (int i = 0; i < stripeCount; i++) {
+            stripes[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>(queueCapacity), threadFactory);
+        }
+        metricsCollector.registerListenerQueueDepth(queueDepth::get);
+    }
+    
+    /**
+     * Submit listener with event to pending queue, event is dropped if pending queue is full.
+     *
+     * @param listener listener
+     * @param eventSupplier supplier of event, which is called by listener thread before executing listener
+     */
+    public void submit(final DataChangedEventListener listener, final Supplier<DataChangedEvent> eventSupplier) {
+        long submitNanos = System.nanoTime();
+        boolean offered = pendingTasks.offer(new ListenerTask(stripes[Math.floorMod(System.identityHashCode(listener), stripes.length)], () -> {
+            queueDepth.decrementAndGet();
+            metricsCollector.recordDispatchLag(System.nanoTime() - submitNanos);
+            try {
+                listener.onChange(eventSupplier.get());
+            } catch (final RuntimeException ex) {
+                log.error("Failed to notify data changed event listener", ex);
+            } finally {
+                flush();
+            }
+        }));
+        if (offered) {
+            queueDepth.incrementAndGet();
+        } else {
+            metricsCollector.recordListenerEventDropped();
+            log.warn("Data changed event is dropped, because pending queue of listeners is full");
+        }
+    }
+    
+    /**
+     * Hand pending events to stripes in submitted order without blocking.
+     */
+    public void flush() {
+        while (!pendingTasks.isEmpty() && flushLock.tryLock()) {
+            ListenerTask blockedTask = null;
+            try {
+                for (ListenerTask each = pendingTasks.peek(); null != each; each = pendingTasks.peek()) {
+                    if (!each.execute()) {
+                        blockedTask = each;
+                        break;
+                    }
+                    pendingTasks.poll();
+                }
+            } finally {
+                flushLock.unlock();
+            }
+            if (null != blockedTask && blockedTask.isStripeFull()) {
+                return;
+            }
+        }
+    }
+    /**
+     * Shutdown and wait for queued events to be executed.
+     *
+     * @param timeoutMillis timeout milliseconds of waiting
+     */
+    @SneakyThrows(InterruptedException.class)
+    public void shutdown(final long timeoutMillis) {
+        for (ThreadPoolExecutor each : stripes) {
+            each.shutdown();
+        }
+        long deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (ThreadPoolExecutor each : stripes) {
+            each.awaitTermination(Math.max(0L, deadlineNanos - System.nanoTime()), TimeUnit.NANOSECONDS);
+        }
+    }
+    
+    @RequiredArgsConstructor
+    private static final class ListenerTask {
+        
+        private final ThreadPoolExecutor stripe;
+        
+        private final Runnable runnable;
+        
+        private boolean execute() {
+            try {
+                stripe.execute(runnable);
+                return true;
+            } catch (final RejectedExecutionException ex) {
+                return stripe.isShutdown();
+            }
+        }
+        
+        private boolean isStripeFull() {
+            return 0 == stripe.getQueue().remainingCapacity();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.listener;
+
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Trie of data changed event listeners keyed by prefix, each prefix may have multiple listeners.
+ */
+public final class ListenerTrie {
+    
+    private final Node root = new Node();
+    
+    private int size;
+    
+    /**
+     * Put prefix and listener.
+     *
+     * @param prefix prefix
+     * @param listener listener
+     */
+    public void put(final String prefix, final DataChangedEventListener listener) {
+        Node node = root;
+        for (int i = 0; i < prefix.length(); i++) {
+            node = node.children.computeIfAbsent(prefix.charAt(i), unused -> new Node());
+        }
+        node.listeners.add(listener);
+        size++;
+    }
+    
+    /**
+     * Remove all listeners of prefix.
+     *
+     * @param prefix prefix
+     * @return count of removed listeners
+     */
+    public int remove(final String prefix) {
+        return removeListeners(prefix, Collection::clear);
+    }
+    
+    /**
+     * Remove listener of prefix.
+     *
+     * @param prefix prefix
+     * @param listener listener
+     * @return whether listener of prefix existed
+     */
+    public boolean remove(final String prefix, final DataChangedEventListener listener) {
+        return 1 == removeListeners(prefix, listeners -> listeners.remove(listener));
+    }
+    
+    private int removeListeners(final String prefix, final Consumer<Collection<DataChangedEventListener>> remover) {
+        Deque<Node> path = new LinkedList<>();
+        Node node = root;
+        for (int i = 0; i < prefix.length() && null != node; i++) {
+            path.push(node);
+            node = node.children.get(prefix.charAt(i));
+        }
+        if (null == node) {
+            return 0;
+        }
+        int preSize = node.listeners.size();
+        remover.accept(node.listeners);
+        int result = preSize - node.listeners.size();
+        size -= result;
+        for (int i = prefix.length() - 1; i >= 0 && node.listeners.isEmpty() && node.children.isEmpty(); i--) {
+            Node parent = path.pop();
+            parent.children.remove(prefix.charAt(i));
+            node = parent;
+        }
+        return result;
+    }
+    
+    /**
+     * Find listeners whose prefix matches key.
+     *
+     * @param key key
+     * @return matched listeners
+     */
+    public Collection<DataChangedEventListener> match(final String key) {
+        Collection<DataChangedEventListener> result = new LinkedList<>();
+        Node node = root;
+        for (int i = 0; null != node; i++) {
+            result.addAll(node.listeners);
+            node = i < key.length() ? node.children.get(key.charAt(i)) : null;
+        }
+        return result;
+    }
+    
+    /**
+     * Judge whether trie is empty.
+     *
+     * @return is empty or not
+     */
+    public boolean isEmpty() {
+        return 0 == size;
+    }
+    
+    private static final class Node {
+        
+        private final Map<Character, Node> children = new HashMap<>();
+        
+        private final Collection<DataChangedEventListener> listeners = new LinkedList<>();
+    }
+}
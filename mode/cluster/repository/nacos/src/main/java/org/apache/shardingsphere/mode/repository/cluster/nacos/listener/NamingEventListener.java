@@ -21,112 +21,183 @@ import com.alibaba.nacos.api.naming.listener.Event;
 import com.alibaba.nacos.api.naming.listener.EventListener;
 import com.alibaba.nacos.api.naming.listener.NamingEvent;
 import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.RequiredArgsConstructor;
 import org.apache.shardingsphere.mode.event.DataChangedEvent;
 import org.apache.shardingsphere.mode.event.DataChangedEvent.Type;
 import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
-import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.NacosMetricsCollector;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceChange;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceSnapshot;
 
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Naming event listener.
+ * 
+ * <p>When snapshot is loaded from snapshot file, callers may read it before it is reconciled and watch after the reconcile changes were dispatched.
+ * So changes since loading are replayed to listeners put later, as the difference between the loaded entry and the latest entry of each changed key.</p>
  */
+@RequiredArgsConstructor
 public final class NamingEventListener implements EventListener {
     
-    private Map<String, Instance> preInstances = new HashMap<>();
+    private final InstanceSnapshot snapshot;
     
-    private final Map<String, DataChangedEventListener> prefixListenerMap = new HashMap<>();
+    private final ListenerExecutor listenerExecutor;
+    
+    private final NacosMetricsCollector metricsCollector;
+    
+    private final Function<InstanceEntry, String> valueLoader;
+    
+    private final Function<InstanceEntry, String> removedValueLoader;
+    
+    private final ListenerTrie listenerTrie = new ListenerTrie();
+    
+    private Map<String, InstanceEntry> loadedEntries;
     
     @Override
     public void onEvent(final Event event) {
-        if (!(event instanceof NamingEvent)) {
-            return;
+        if (event instanceof NamingEvent) {
+            List<Instance> instances = ((NamingEvent) event).getInstances();
+            metricsCollector.recordPushEvent(instances.size());
+            refresh(instances);
         }
-        NamingEvent namingEvent = (NamingEvent) event;
-        Collection<Instance> instances = namingEvent.getInstances().stream().sorted(Comparator.comparing(NacosMetaDataUtils::getKey)).collect(Collectors.toList());
-        Collection<WatchData> watchDataList = new LinkedList<>();
+    }
+    
+    /**
+     * Refresh snapshot with all instances of service and notify changes to listeners.
+     *
+     * @param instances all instances of service
+     */
+    public void refresh(final Collection<Instance> instances) {
+        synchronized (this) {
+            dispatch(snapshot.refresh(instances));
+        }
+        listenerExecutor.flush();
+    }
+    
+    /**
+     * Apply instances registered by this node to snapshot and notify changes to listeners.
+     *
+     * @param instances registered instances
+     * @param expireMillis millis after which registered instances are discarded if they are not pushed
+     */
+    public void register(final Collection<Instance> instances, final long expireMillis) {
+        synchronized (this) {
+            dispatch(snapshot.register(instances, expireMillis));
+        }
+        listenerExecutor.flush();
+    }
+    
+    /**
+     * Apply instances deregistered by this node to snapshot and notify changes to listeners.
+     *
+     * @param instances deregistered instances
+     * @param expireMillis millis after which deregistered instances are discarded if they are not pushed
+     */
+    public void deregister(final Collection<Instance> instances, final long expireMillis) {
         synchronized (this) {
-            instances.forEach(instance -> prefixListenerMap.forEach((prefixPath, listener) -> {
-                String key = NacosMetaDataUtils.getKey(instance);
-                if (key.startsWith(prefixPath)) {
-                    Instance preInstance = preInstances.remove(key);
-                    WatchData watchData = new WatchData(key, preInstance, instance, listener);
-                    watchDataList.add(watchData);
-                }
-            }));
-            preInstances.values().stream().sorted(Comparator.comparing(NacosMetaDataUtils::getKey).reversed()).forEach(instance -> prefixListenerMap.forEach((prefixPath, listener) -> {
-                String key = NacosMetaDataUtils.getKey(instance);
-                if (key.startsWith(prefixPath)) {
-                    WatchData watchData = new WatchData(key, instance, null, listener);
-                    watchDataList.add(watchData);
-                }
-            }));
-            watchDataList.forEach(this::watch);
-            setPreInstances(instances);
+            dispatch(snapshot.deregister(instances, expireMillis));
+        }
+        listenerExecutor.flush();
+    }
+    
+    /**
+     * Replay changes since now to listeners put later, which is called after snapshot is loaded from snapshot file.
+     */
+    public synchronized void replayChangesToLaterListeners() {
+        loadedEntries = new LinkedHashMap<>();
+    }
+    
+    private void dispatch(final Collection<InstanceChange> changes) {
+        if (null != loadedEntries) {
+            changes.forEach(each -> loadedEntries.putIfAbsent(each.getKey(), each.getPreEntry()));
         }
+        if (changes.isEmpty() || listenerTrie.isEmpty()) {
+            return;
+        }
+        sort(changes).forEach(each -> listenerTrie.match(each.getKey()).forEach(listener -> watch(new WatchData(each.getKey(), each.getPreEntry(), each.getEntry(), listener))));
+    }
+    
+    private Stream<InstanceChange> sort(final Collection<InstanceChange> changes) {
+        return Stream.concat(changes.stream().filter(each -> null != each.getEntry()).sorted(Comparator.comparing(InstanceChange::getKey)),
+                changes.stream().filter(each -> null == each.getEntry()).sorted(Comparator.comparing(InstanceChange::getKey).reversed()));
     }
     
     private void watch(final WatchData watchData) {
         String key = watchData.getKey();
-        Instance preInstance = watchData.getPreInstance();
-        Instance instance = watchData.getInstance();
+        InstanceEntry preEntry = watchData.getPreEntry();
+        InstanceEntry entry = watchData.getEntry();
         DataChangedEventListener listener = watchData.getListener();
-        Type changedType = getEventChangedType(preInstance, instance);
+        Type changedType = getEventChangedType(preEntry, entry);
         switch (changedType) {
             case ADDED:
             case UPDATED:
-                listener.onChange(new DataChangedEvent(key, NacosMetaDataUtils.getValue(instance), changedType));
+                listenerExecutor.submit(listener, () -> new DataChangedEvent(key, valueLoader.apply(entry), changedType));
                 break;
             case DELETED:
-                listener.onChange(new DataChangedEvent(key, NacosMetaDataUtils.getValue(preInstance), changedType));
+                listenerExecutor.submit(listener, () -> new DataChangedEvent(key, removedValueLoader.apply(preEntry), changedType));
                 break;
             default:
         }
     }
     
-    private Type getEventChangedType(final Instance preInstance, final Instance instance) {
-        if (null == preInstance && null != instance) {
+    private Type getEventChangedType(final InstanceEntry preEntry, final InstanceEntry entry) {
+        if (null == preEntry && null != entry) {
             return Type.ADDED;
         }
-        if (null != preInstance && null != instance && NacosMetaDataUtils.getTimestamp(preInstance) != NacosMetaDataUtils.getTimestamp(instance)) {
+        if (null != preEntry && null != entry && preEntry.getVersion() != entry.getVersion()) {
             return Type.UPDATED;
         }
-        if (null != preInstance && null == instance) {
+        if (null != preEntry && null == entry) {
             return Type.DELETED;
         }
         return Type.IGNORED;
     }
     
     /**
-     * Update pre instances.
+     * Put prefix path and listener, changes to replay under prefix path are notified to listener.
      *
-     * @param instances instances
+     * @param prefixPath prefix path
+     * @param listener listener
      */
-    public void setPreInstances(final Collection<Instance> instances) {
-        preInstances = instances.stream().filter(instance -> {
-            for (String each : prefixListenerMap.keySet()) {
-                if (NacosMetaDataUtils.getKey(instance).startsWith(each)) {
-                    return true;
-                }
+    public void put(final String prefixPath, final DataChangedEventListener listener) {
+        synchronized (this) {
+            listenerTrie.put(prefixPath, listener);
+            if (null != loadedEntries) {
+                Collection<InstanceChange> replayedChanges = loadedEntries.entrySet().stream().filter(entry -> entry.getKey().startsWith(prefixPath))
+                        .map(entry -> new InstanceChange(entry.getKey(), entry.getValue(), snapshot.findLatest(entry.getKey()).orElse(null))).collect(Collectors.toList());
+                sort(replayedChanges).forEach(each -> watch(new WatchData(each.getKey(), each.getPreEntry(), each.getEntry(), listener)));
             }
-            return false;
-        }).collect(Collectors.toMap(NacosMetaDataUtils::getKey, Function.identity(),
-                (oldValue, currentValue) -> NacosMetaDataUtils.getTimestamp(oldValue) > NacosMetaDataUtils.getTimestamp(currentValue) ? oldValue : currentValue));
+        }
+        listenerExecutor.flush();
+    }
+    
+    /**
+     * Remove all listeners of prefix path.
+     *
+     * @param prefixPath prefix path
+     * @return count of removed listeners
+     */
+    public synchronized int remove(final String prefixPath) {
+        return listenerTrie.remove(prefixPath);
     }
     
     /**
-     * Put prefix path and listener.
+     * Remove listener of prefix path.
      *
      * @param prefixPath prefix path
      * @param listener listener
+     * @return whether listener of prefix path existed
      */
-    public synchronized void put(final String prefixPath, final DataChangedEventListener listener) {
-        prefixListenerMap.put(prefixPath, listener);
+    public synchronized boolean remove(final String prefixPath, final DataChangedEventListener listener) {
+        return listenerTrie.remove(prefixPath, listener);
     }
 }
@@ -17,10 +17,10 @@
 
 package org.apache.shardingsphere.mode.repository.cluster.nacos.listener;
 
-import com.alibaba.nacos.api.naming.pojo.Instance;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
 
 /**
  * Watch data.
@@ -31,9 +31,9 @@ public final class WatchData {
     
     private final String key;
     
-    private final Instance preInstance;
+    private final InstanceEntry preEntry;
     
-    private final Instance instance;
+    private final InstanceEntry entry;
     
     private final DataChangedEventListener listener;
 }
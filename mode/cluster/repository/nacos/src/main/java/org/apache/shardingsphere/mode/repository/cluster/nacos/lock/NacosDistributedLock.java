@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.lock;
+
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.lock.DistributedLock;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.NacosRepository;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * Nacos distributed lock.
+ * 
+ * <p>Each contender registers an ephemeral waiter under lock path, named by its registering time, and the first waiter claims the lock by marking itself as locked
+ * when no other waiter is locked. Waiter names are ordered by clocks of compute nodes, so a claim is kept only if no other locked waiter is fetched from Nacos server
+ * after the claim is confirmed, otherwise it is withdrawn. Of two concurrent claims the later confirmed one always fetches the other, so at most one contender holds the lock.
+ * Waiters are woken by change events of lock path, and waiters of dead sessions expire with their ephemeral instances.</p>
+ */
+public final class NacosDistributedLock implements DistributedLock {
+    
+    private static final String PATH_SEPARATOR = "/";
+    
+    private static final String WAITER_NAME_PATTERN = "%019d-%s";
+    
+    private static final String LOCKED_VALUE = "locked";
+    
+    private static final long RETRY_INTERVAL_MILLIS = 50L;
+    
+    private final String lockPath;
+    
+    private final NacosRepository client;
+    
+    private final Object monitor = new Object();
+    
+    private final ThreadLocal<String> lockedWaiterKey = new ThreadLocal<>();
+    
+    public NacosDistributedLock(final String lockKey, final NacosRepository client) {
+        lockPath = lockKey;
+        this.client = client;
+    }
+    
+    @Override
+    public boolean tryLock(final long timeoutMillis) {
+        if (null != lockedWaiterKey.get()) {
+            return true;
+        }
+        long deadlineMillis = System.currentTimeMillis() + timeoutMillis;
+        String waiterName = String.format(WAITER_NAME_PATTERN, NacosMetaDataUtils.nextVersion(), UUID.randomUUID());
+        String waiterKey = lockPath + PATH_SEPARATOR + waiterName;
+        DataChangedEventListener listener = event -> {
+            synchronized (monitor) {
+                monitor.notifyAll();
+            }
+        };
+        client.watch(lockPath, listener);
+        boolean locked = false;
+        try {
+            client.persistEphemeral(waiterKey, "");
+            while (waitUntilClaimable(waiterName, deadlineMillis)) {
+                if (claim(waiterName, waiterKey, deadlineMillis)) {
+                    lockedWaiterKey.set(waiterKey);
+                    locked = true;
+                    return true;
+                }
+                if (!sleep(deadlineMillis)) {
+                    break;
+                }
+            }
+            return false;
+        } finally {
+            try {
+                if (!locked) {
+                    deleteWaiter(waiterKey);
+                }
+            } finally {
+                client.removeDataListener(lockPath, listener);
+            }
+        }
+    }
+    
+    private void deleteWaiter(final String waiterKey) {
+        boolean interrupted = Thread.interrupted();
+        try {
+            client.delete(waiterKey);
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+    
+    private boolean waitUntilClaimable(final String waiterName, final long deadlineMillis) {
+        synchronized (monitor) {
+            while (!isClaimable(waiterName)) {
+                long remainingMillis = deadlineMillis - System.currentTimeMillis();
+                if (remainingMillis <= 0L) {
+                    return false;
+                }
+                try {
+                    monitor.wait(remainingMillis);
+                } catch (final InterruptedException ignored) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+    
+    private boolean isClaimable(final String waiterName) {
+        Collection<String> waiterNames = client.getChildrenKeys(lockPath);
+        if (waiterNames.isEmpty() || !waiterName.equals(Collections.min(waiterNames))) {
+            return false;
+        }
+        Collection<String> otherWaiterKeys = waiterNames.stream().filter(each -> !waiterName.equals(each)).map(each -> lockPath + PATH_SEPARATOR + each).collect(Collectors.toList());
+        return !client.query(otherWaiterKeys).containsValue(LOCKED_VALUE);
+    }
+    
+    private boolean claim(final String waiterName, final String waiterKey, final long deadlineMillis) {
+        client.update(waiterKey, LOCKED_VALUE);
+        Map<String, String> waiters = client.fetchChildren(lockPath);
+        while (!LOCKED_VALUE.equals(waiters.get(waiterName))) {
+            if (!sleep(deadlineMillis)) {
+                return false;
+            }
+            waiters = client.fetchChildren(lockPath);
+        }
+        if (waiters.entrySet().stream().anyMatch(each -> !waiterName.equals(each.getKey()) && LOCKED_VALUE.equals(each.getValue()))) {
+            client.update(waiterKey, "");
+            return false;
+        }
+        return true;
+    }
+    
+    private boolean sleep(final long deadlineMillis) {
+        long sleepMillis = Math.min(RETRY_INTERVAL_MILLIS, deadlineMillis - System.currentTimeMillis());
+        if (sleepMillis <= 0L) {
+            return false;
+        }
+        try {
+            Thread.sleep(sleepMillis);
+            return true;
+        } catch (final InterruptedException ignored) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+    
+    @Override
+    public void unlock() {
+        String waiterKey = lockedWaiterKey.get();
+        if (null == waiterKey) {
+            return;
+        }
+        try {
+            client.delete(waiterKey);
+        } finally {
+            lockedWaiterKey.remove();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.metrics;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Default Nacos metrics collector, which keeps metrics in memory for bridges to poll.
+ * 
+ * <p>Latencies and lags are recorded in microseconds, push event sizes in count of instances, listener queue depth is polled from the listener executor.</p>
+ */
+@Getter
+public final class DefaultNacosMetricsCollector implements NacosMetricsCollector {
+    
+    private final Map<NacosOperationType, ExponentialHistogram> latencyHistograms = new EnumMap<>(NacosOperationType.class);
+    
+    private final LongAdder getAllInstancesCount = new LongAdder();
+    
+    private final LongAdder scannedInstanceCount = new LongAdder();
+    
+    private final LongAdder waitValueRetryCount = new LongAdder();
+    
+    private final LongAdder waitValueTimeoutCount = new LongAdder();
+    
+    private final ExponentialHistogram pushEventSizeHistogram = new ExponentialHistogram();
+    
+    private final ExponentialHistogram dispatchLagHistogram = new ExponentialHistogram();
+    
+    private final LongAdder droppedListenerEventCount = new LongAdder();
+    
+    @Getter(AccessLevel.NONE)
+    private volatile IntSupplier listenerQueueDepthSupplier = () -> 0;
+    
+    public DefaultNacosMetricsCollector() {
+        for (NacosOperationType each : NacosOperationType.values()) {
+            latencyHistograms.put(each, new ExponentialHistogram());
+        }
+    }
+    
+    @Override
+    public void recordLatency(final NacosOperationType operationType, final long latencyNanos) {
+        latencyHistograms.get(operationType).record(TimeUnit.NANOSECONDS.toMicros(latencyNanos));
+    }
+    
+    @Override
+    public void recordGetAllInstances(final int instanceCount) {
+        getAllInstancesCount.increment();
+        scannedInstanceCount.add(instanceCount);
+    }
+    
+    @Override
+    public void recordWaitValueRetry() {
+        waitValueRetryCount.increment();
+    }
+    
+    @Override
+    public void recordWaitValueTimeout() {
+        waitValueTimeoutCount.increment();
+    }
+    
+    @Override
+    public void recordPushEvent(final int instanceCount) {
+        pushEventSizeHistogram.record(instanceCount);
+    }
+    
+    @Override
+    public void recordDispatchLag(final long lagNanos) {
+        dispatchLagHistogram.record(TimeUnit.NANOSECONDS.toMicros(lagNanos));
+    }
+    
+    @Override
+    public void registerListenerQueueDepth(final IntSupplier queueDepthSupplier) {
+        listenerQueueDepthSupplier = queueDepthSupplier;
+    }
+    
+    @Override
+    public void recordListenerEventDropped() {
+        droppedListenerEventCount.increment();
+    }
+    
+    /**
+     * Get count of data changed events waiting to be executed by listeners.
+     *
+     * @return listener queue depth
+     */
+    public int getListenerQueueDepth() {
+        return listenerQueueDepthSupplier.getAsInt();
+    }
+    
+    @Override
+    public String getType() {
+        return "DEFAULT";
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogram with power of two buckets.
+ * 
+ * <p>Bucket {@code i} counts values not greater than {@code 2^i}, the last bucket counts all greater values.</p>
+ */
+public final class ExponentialHistogram {
+    
+    private static final int BUCKET_COUNT = 26;
+    
+    private final LongAdder[] buckets = new LongAdder[BUCKET_COUNT];
+    
+    private final LongAdder count = new LongAdder();
+    
+    private final LongAdder sum = new LongAdder();
+    
+    public ExponentialHistogram() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+    
+    /**
+     * Record value.
+     *
+     * @param value value
+     */
+    public void record(final long value) {
+        int index = 64 - Long.numberOfLeadingZeros(Math.max(1L, value) - 1L);
+        buckets[Math.min(index, BUCKET_COUNT - 1)].increment();
+        count.increment();
+        sum.add(value);
+    }
+    
+    /**
+     * Get count of recorded values.
+     *
+     * @return count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+    
+    /**
+     * Get sum of recorded values.
+     *
+     * @return sum
+     */
+    public long getSum() {
+        return sum.sum();
+    }
+    
+    /**
+     * Get count of values in each bucket.
+     *
+     * @return bucket counts
+     */
+    public long[] getBucketCounts() {
+        long[] result = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            result[i] = buckets[i].sum();
+        }
+        return result;
+    }
+    
+    /**
+     * Get upper bound of bucket.
+     *
+     * @param bucketIndex bucket index
+     * @return upper bound, {@link Long#MAX_VALUE} for the last bucket
+     */
+    public static long getBucketUpperBound(final int bucketIndex) {
+        return bucketIndex < BUCKET_COUNT - 1 ? 1L << bucketIndex : Long.MAX_VALUE;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.metrics;
+
+import org.apache.shardingsphere.infra.spi.type.typed.TypedSPI;
+
+import java.util.function.IntSupplier;
+
+/**
+ * Nacos metrics collector.
+ * 
+ * <p>Implementations are called on hot paths and from many threads, so they should be thread safe and never block.</p>
+ */
+public interface NacosMetricsCollector extends TypedSPI {
+    
+    /**
+     * Record latency of operation.
+     *
+     * @param operationType operation type
+     * @param latencyNanos latency nanoseconds
+     */
+    void recordLatency(NacosOperationType operationType, long latencyNanos);
+    
+    /**
+     * Record call of getting all instances of service.
+     *
+     * @param instanceCount count of scanned instances
+     */
+    void recordGetAllInstances(int instanceCount);
+    
+    /**
+     * Record retry of waiting for value availability.
+     */
+    void recordWaitValueRetry();
+    
+    /**
+     * Record timeout of waiting for value availability.
+     */
+    void recordWaitValueTimeout();
+    
+    /**
+     * Record event pushed by Nacos server.
+     *
+     * @param instanceCount count of instances in event
+     */
+    void recordPushEvent(int instanceCount);
+    
+    /**
+     * Record lag between notifying and executing data changed event listener.
+     *
+     * @param lagNanos lag nanoseconds
+     */
+    void recordDispatchLag(long lagNanos);
+    
+    /**
+     * Register supplier of count of data changed events waiting to be executed by listeners, which is polled as a gauge.
+     *
+     * @param queueDepthSupplier supplier of queue depth
+     */
+    void registerListenerQueueDepth(IntSupplier queueDepthSupplier);
+    
+    /**
+     * Record data changed event dropped because pending queue of listeners is full.
+     */
+    void recordListenerEventDropped();
+    
+    @Override
+    String getType();
+}
@@ -33,6 +33,12 @@ public enum NacosPropertyKey implements TypedPropertyKey {
      */
     CLUSTER_IP("clusterIp", "", String.class),
     
+    /**
+     * Comma separated key prefixes, keys under each prefix are stored in separate services.
+     * Keys stored before prefixes are configured are still read from default services until they are rewritten, so all nodes should be configured with same prefixes.
+     */
+    PARTITION_PREFIXES("partitionPrefixes", "", String.class),
+    
     /**
      * Retry interval milliseconds when checking whether value is available.
      */
@@ -43,6 +49,65 @@ public enum NacosPropertyKey implements TypedPropertyKey {
      */
     MAX_RETRIES("maxRetries", String.valueOf(3), int.class),
     
+    /**
+     * Thread count of asynchronous writes.
+     */
+    ASYNC_WRITE_THREADS("asyncWriteThreads", String.valueOf(4), int.class),
+    
+    /**
+     * Thread count of deregistering instances in parallel when deleting subtree.
+     */
+    DELETE_THREADS("deleteThreads", String.valueOf(8), int.class),
+    
+    /**
+     * Thread count of data changed event listeners.
+     */
+    LISTENER_THREADS("listenerThreads", String.valueOf(4), int.class),
+    
+    /**
+     * Queue capacity of each data changed event listener thread and of events pending for them, events beyond it are dropped.
+     */
+    LISTENER_QUEUE_CAPACITY("listenerQueueCapacity", String.valueOf(10000), int.class),
+    
+    /**
+     * Values longer than this count of characters are compressed, 0 to disable.
+     * All compute nodes must support compressed values before enabling it.
+     */
+    VALUE_COMPRESSION_THRESHOLD("valueCompressionThreshold", String.valueOf(0), int.class),
+    
+    /**
+     * Max count of characters of stored value in one instance, longer values are chunked across instances, 0 to disable.
+     * All compute nodes must support chunked values before enabling it.
+     */
+    VALUE_CHUNK_SIZE("valueChunkSize", String.valueOf(0), int.class),
+    
+    /**
+     * Whether to write hybrid logical clock versions next to legacy timestamps.
+     * All compute nodes must support hybrid logical clock versions before enabling it.
+     */
+    HYBRID_LOGICAL_CLOCK_VERSION("hybridLogicalClockVersion", Boolean.FALSE.toString(), boolean.class),
+    
+    /**
+     * Count of instances which ephemeral keys of this compute node are packed into, sharing heartbeats of instances, 0 to disable.
+     * All compute nodes must support packed instances before enabling it.
+     */
+    EPHEMERAL_PACK_COUNT("ephemeralPackCount", String.valueOf(0), int.class),
+    
+    /**
+     * Storage of persistent values, {@code naming} keeps values in instance meta data, {@code config} keeps values in config service and only digests in instances.
+     */
+    PERSISTENT_STORAGE("persistentStorage", "naming", String.class),
+    
+    /**
+     * Directory of local snapshot files of services, which are loaded at startup before instances are fetched, empty to disable.
+     */
+    SNAPSHOT_DIRECTORY("snapshotDirectory", "", String.class),
+    
+    /**
+     * Type of metrics collector.
+     */
+    METRICS_COLLECTOR_TYPE("metricsCollectorType", "DEFAULT", String.class),
+    
     /**
      * Time to live seconds.
      */
@@ -0,0 +1,371 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.RequiredArgsConstructor;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.KeyValue;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Local snapshot of all instances of Nacos service.
+ */
+public final class InstanceSnapshot {
+    
+    private final Map<String, Collection<InstanceEntry>> keyEntryMap = new ConcurrentHashMap<>();
+    
+    private final Map<String, InstanceEntry> keyLatestEntryMap = new ConcurrentHashMap<>();
+    
+    private final PathTrie keyTrie = new PathTrie();
+    
+    private final Collection<ValueExpectation> valueExpectations = new LinkedList<>();
+    
+    private final Map<String, PendingInstance> pendingInstances = new LinkedHashMap<>();
+    
+    private final Map<String, Collection<String>> inetAddrKeyMap = new HashMap<>();
+    
+    private final Map<String, Instance> inetAddrInstanceMap = new HashMap<>();
+    
+    /**
+     * Refresh snapshot with all instances of service.
+     * 
+     * <p>Pending instances written by this node override pushed instances until they are confirmed by pushed instances or expired.</p>
+     *
+     * @param instances all instances of service
+     * @return changes of keys
+     */
+    public synchronized Collection<InstanceChange> refresh(final Collection<Instance> instances) {
+        Collection<Instance> mergedInstances = merge(instances);
+        inetAddrInstanceMap.clear();
+        mergedInstances.forEach(each -> inetAddrInstanceMap.put(each.toInetAddr(), each));
+        Map<String, List<InstanceEntry>> latestKeyEntryMap = mergedInstances.stream().flatMap(each -> InstanceEntry.decodeAll(each).stream()).collect(Collectors.groupingBy(InstanceEntry::getKey));
+        Collection<InstanceChange> result = new LinkedList<>();
+        for (String each : keyEntryMap.keySet()) {
+            if (!latestKeyEntryMap.containsKey(each)) {
+                putEntries(each, Collections.emptyList(), result);
+            }
+        }
+        latestKeyEntryMap.forEach((key, value) -> putEntries(key, value, result));
+        valueExpectations.removeIf(ValueExpectation::check);
+        return result;
+    }
+    
+    private Collection<Instance> merge(final Collection<Instance> instances) {
+        if (pendingInstances.isEmpty()) {
+            return instances;
+        }
+        Map<String, Instance> result = new LinkedHashMap<>(instances.size() + pendingInstances.size(), 1F);
+        instances.forEach(each -> result.put(each.toInetAddr(), each));
+        long currentMillis = System.currentTimeMillis();
+        pendingInstances.values().removeIf(each -> each.expireMillis <= currentMillis || each.isConfirmed(result.get(each.instance.toInetAddr())));
+        for (PendingInstance each : pendingInstances.values()) {
+            if (each.registered) {
+                result.put(each.instance.toInetAddr(), each.instance);
+            } else {
+                result.remove(each.instance.toInetAddr());
+            }
+        }
+        return result.values();
+    }
+    
+    /**
+     * Apply instances registered by this node before they are pushed.
+     *
+     * @param instances registered instances
+     * @param expireMillis millis after which registered instances are discarded if they are not pushed
+     * @return changes of keys
+     */
+    public synchronized Collection<InstanceChange> register(final Collection<Instance> instances, final long expireMillis) {
+        return applyPendingInstances(instances, true, expireMillis);
+    }
+    
+    /**
+     * Apply instances deregistered by this node before they are pushed.
+     *
+     * @param instances deregistered instances
+     * @param expireMillis millis after which deregistered instances are discarded if they are not pushed
+     * @return changes of keys
+     */
+    public synchronized Collection<InstanceChange> deregister(final Collection<Instance> instances, final long expireMillis) {
+        return applyPendingInstances(instances, false, expireMillis);
+    }
+    
+    private Collection<InstanceChange> applyPendingInstances(final Collection<Instance> instances, final boolean registered, final long expireMillis) {
+        Map<String, List<InstanceEntry>> keyPendingEntryMap = new HashMap<>();
+        Collection<String> pendingInetAddrs = new HashSet<>(instances.size(), 1F);
+        Collection<String> affectedKeys = new HashSet<>();
+        for (Instance each : instances) {
+            String inetAddr = each.toInetAddr();
+            pendingInstances.put(inetAddr, new PendingInstance(each, InstanceEntry.decodeVersion(each), registered, expireMillis));
+            pendingInetAddrs.add(inetAddr);
+            if (registered) {
+                inetAddrInstanceMap.put(inetAddr, each);
+            } else {
+                inetAddrInstanceMap.remove(inetAddr);
+            }
+            affectedKeys.addAll(inetAddrKeyMap.getOrDefault(inetAddr, Collections.emptySet()));
+            if (registered) {
+                InstanceEntry.decodeAll(each).forEach(entry -> keyPendingEntryMap.computeIfAbsent(entry.getKey(), unused -> new LinkedList<>()).add(entry));
+            }
+        }
+        affectedKeys.addAll(keyPendingEntryMap.keySet());
+        Collection<InstanceChange> result = new LinkedList<>();
+        for (String each : affectedKeys) {
+            List<InstanceEntry> entries = find(each).stream().filter(entry -> !pendingInetAddrs.contains(entry.getInstance().toInetAddr())).collect(Collectors.toList());
+            entries.addAll(keyPendingEntryMap.getOrDefault(each, Collections.emptyList()));
+            putEntries(each, entries, result);
+        }
+        valueExpectations.removeIf(ValueExpectation::check);
+        return result;
+    }
+    
+    /**
+     * Judge whether any instance written by this node is not pushed yet.
+     *
+     * @return has pending instances or not
+     */
+    public synchronized boolean hasPendingInstances() {
+        return !pendingInstances.isEmpty();
+    }
+    
+    private void putEntries(final String key, final List<InstanceEntry> entries, final Collection<InstanceChange> changes) {
+        Collection<InstanceEntry> preEntries = keyEntryMap.get(key);
+        if (null != preEntries) {
+            preEntries.forEach(each -> removeInetAddrKey(each.getInstance().toInetAddr(), key));
+        }
+        entries.forEach(each -> inetAddrKeyMap.computeIfAbsent(each.getInstance().toInetAddr(), unused -> new HashSet<>()).add(key));
+        if (entries.isEmpty()) {
+            if (null != preEntries) {
+                keyEntryMap.remove(key);
+                keyTrie.remove(key);
+                changes.add(new InstanceChange(key, keyLatestEntryMap.remove(key), null));
+            }
+        } else if (null == preEntries) {
+            keyEntryMap.put(key, Collections.unmodifiableList(entries));
+            keyTrie.add(key);
+            changes.add(new InstanceChange(key, null, putLatestEntry(key, entries)));
+        } else if (isChanged(preEntries, entries)) {
+            keyEntryMap.put(key, Collections.unmodifiableList(entries));
+            changes.add(new InstanceChange(key, keyLatestEntryMap.get(key), putLatestEntry(key, entries)));
+        }
+    }
+    
+    private void removeInetAddrKey(final String inetAddr, final String key) {
+        Collection<String> keys = inetAddrKeyMap.get(inetAddr);
+        if (null != keys && keys.remove(key) && keys.isEmpty()) {
+            inetAddrKeyMap.remove(inetAddr);
+        }
+    }
+    
+    private boolean isChanged(final Collection<InstanceEntry> preEntries, final Collection<InstanceEntry> entries) {
+        if (preEntries.size() != entries.size()) {
+            return true;
+        }
+        Map<String, Long> preVersions = preEntries.stream().collect(Collectors.toMap(each -> each.getInstance().toInetAddr(), InstanceEntry::getVersion, Math::max));
+        return entries.stream().anyMatch(each -> !Objects.equals(preVersions.get(each.getInstance().toInetAddr()), each.getVersion()));
+    }
+    
+    private InstanceEntry putLatestEntry(final String key, final Collection<InstanceEntry> entries) {
+        InstanceEntry result = getAssembledEntries(entries).stream().max(Comparator.comparingLong(InstanceEntry::getVersion)).orElse(null);
+        if (null == result) {
+            keyLatestEntryMap.remove(key);
+        } else {
+            keyLatestEntryMap.put(key, result);
+            NacosMetaDataUtils.observeVersion(result.getVersion());
+        }
+        return result;
+    }
+    
+    private Collection<InstanceEntry> getAssembledEntries(final Collection<InstanceEntry> entries) {
+        if (entries.stream().allMatch(InstanceEntry::isPlain)) {
+            return entries;
+        }
+        Collection<InstanceEntry> result = new LinkedList<>();
+        Map<String, List<InstanceEntry>> chunkedEntries = new HashMap<>();
+        for (InstanceEntry each : entries) {
+            if (each.isPlain()) {
+                result.add(each);
+            } else {
+                chunkedEntries.computeIfAbsent(each.getInstance().getIp() + "@" + each.getVersion(), unused -> new LinkedList<>()).add(each);
+            }
+        }
+        for (List<InstanceEntry> each : chunkedEntries.values()) {
+            InstanceEntry.assemble(each).ifPresent(result::add);
+        }
+        return result;
+    }
+    
+    /**
+     * Expect key values to be available in snapshot.
+     *
+     * @param keyValues expected key values
+     * @return future which completes when all key values are available
+     */
+    public synchronized CompletableFuture<Void> expect(final Collection<KeyValue> keyValues) {
+        ValueExpectation result = new ValueExpectation(new LinkedList<>(keyValues));
+        if (!result.check()) {
+            valueExpectations.add(result);
+        }
+        return result.future;
+    }
+    
+    /**
+     * Judge whether any expected key value is not available yet.
+     *
+     * @return is expecting or not
+     */
+    public synchronized boolean isExpecting() {
+        return !valueExpectations.isEmpty();
+    }
+    
+    /**
+     * Judge whether key value is available in snapshot.
+     *
+     * @param keyValue key value
+     * @return is available or not
+     */
+    public boolean isAvailable(final KeyValue keyValue) {
+        Collection<InstanceEntry> entries = find(keyValue.getKey());
+        return entries.isEmpty() ? null == keyValue.getValue() : getAssembledEntries(entries).stream().anyMatch(each -> each.matches(keyValue.getValue()));
+    }
+    
+    /**
+     * Find instance entries of key.
+     *
+     * @param key key
+     * @return instance entries of key
+     */
+    public Collection<InstanceEntry> find(final String key) {
+        return keyEntryMap.getOrDefault(key, Collections.emptyList());
+    }
+    
+    /**
+     * Find latest instance entry of key, which is assembled from chunks if value is chunked.
+     *
+     * @param key key
+     * @return latest instance entry of key
+     */
+    public Optional<InstanceEntry> findLatest(final String key) {
+        return Optional.ofNullable(keyLatestEntryMap.get(key));
+    }
+    
+    /**
+     * Find latest instance entries of keys, which are read from the same refreshed state.
+     *
+     * @param keys keys
+     * @return latest instance entries of existed keys
+     */
+    public synchronized Map<String, InstanceEntry> findLatest(final Collection<String> keys) {
+        Map<String, InstanceEntry> result = new HashMap<>(keys.size(), 1F);
+        for (String each : keys) {
+            InstanceEntry entry = keyLatestEntryMap.get(each);
+            if (null != entry) {
+                result.put(each, entry);
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Find instance of inet address.
+     *
+     * @param inetAddr inet address
+     * @return found instance
+     */
+    public synchronized Optional<Instance> findInstance(final String inetAddr) {
+        return Optional.ofNullable(inetAddrInstanceMap.get(inetAddr));
+    }
+    
+    /**
+     * Find all instance entries.
+     *
+     * @return all instance entries
+     */
+    public Collection<InstanceEntry> findAll() {
+        return keyEntryMap.values().stream().flatMap(Collection::stream).collect(Collectors.toList());
+    }
+    
+    /**
+     * Get children names of key.
+     *
+     * @param key key
+     * @return children names
+     */
+    public Collection<String> getChildrenKeys(final String key) {
+        return keyTrie.getChildren(key);
+    }
+    
+    @RequiredArgsConstructor
+    private static final class PendingInstance {
+        
+        private final Instance instance;
+        
+        private final long version;
+        
+        private final boolean registered;
+        
+        private final long expireMillis;
+        
+        private boolean isConfirmed(final Instance pushedInstance) {
+            if (null == pushedInstance) {
+                return !registered;
+            }
+            long pushedVersion = InstanceEntry.decodeVersion(pushedInstance);
+            return registered ? pushedVersion >= version : pushedVersion > version;
+        }
+    }
+    
+    private final class ValueExpectation {
+        
+        private final Collection<KeyValue> pendingKeyValues;
+        
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        
+        private ValueExpectation(final Collection<KeyValue> pendingKeyValues) {
+            this.pendingKeyValues = pendingKeyValues;
+        }
+        
+        private boolean check() {
+            if (future.isDone()) {
+                return true;
+            }
+            pendingKeyValues.removeIf(InstanceSnapshot.this::isAvailable);
+            if (pendingKeyValues.isEmpty()) {
+                future.complete(null);
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import lombok.RequiredArgsConstructor;
+import lombok.SneakyThrows;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Local file of all instances of Nacos service, which is loaded at startup before instances are fetched from Nacos server.
+ */
+@RequiredArgsConstructor
+public final class InstanceSnapshotFile {
+    
+    private static final int MAGIC = 0x4e534e50;
+    
+    private static final String FILE_SUFFIX = ".snapshot";
+    
+    private final Path directory;
+    
+    /**
+     * Load instances of service.
+     *
+     * @param serviceName service name
+     * @return loaded instances, empty if file is absent or broken
+     */
+    public Optional<List<Instance>> load(final String serviceName) {
+        Path file = getFile(serviceName);
+        if (!Files.isRegularFile(file)) {
+            return Optional.empty();
+        }
+        try (DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+            if (MAGIC != inputStream.readInt()) {
+                return Optional.empty();
+            }
+            int instanceCount = inputStream.readInt();
+            List<Instance> result = new ArrayList<>(instanceCount);
+            for (int i = 0; i < instanceCount; i++) {
+                result.add(readInstance(inputStream));
+            }
+            return Optional.of(result);
+        } catch (final IOException ignored) {
+            return Optional.empty();
+        }
+    }
+    
+    private Instance readInstance(final DataInputStream inputStream) throws IOException {
+        Instance result = new Instance();
+        result.setIp(readString(inputStream));
+        result.setPort(inputStream.readInt());
+        result.setEphemeral(inputStream.readBoolean());
+        int metadataCount = inputStream.readInt();
+        Map<String, String> metadataMap = new HashMap<>(metadataCount, 1F);
+        for (int i = 0; i < metadataCount; i++) {
+            metadataMap.put(readString(inputStream), readString(inputStream));
+        }
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private String readString(final DataInputStream inputStream) throws IOException {
+        byte[] bytes = new byte[inputStream.readInt()];
+        inputStream.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Save instances of service, the previous file is replaced atomically.
+     *
+     * @param serviceName service name
+     * @param instances instances
+     * @throws IOException IO exception
+     */
+    public void save(final String serviceName, final Collection<Instance> instances) throws IOException {
+        Files.createDirectories(directory);
+        Path file = getFile(serviceName);
+        Path tempFile = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        try {
+            try (DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tempFile))))) {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeInt(instances.size());
+                for (Instance each : instances) {
+                    writeInstance(outputStream, each);
+                }
+            }
+            Files.move(tempFile, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tempFile);
+        }
+    }
+    
+    private void writeInstance(final DataOutputStream outputStream, final Instance instance) throws IOException {
+        writeString(outputStream, instance.getIp());
+        outputStream.writeInt(instance.getPort());
+        outputStream.writeBoolean(instance.isEphemeral());
+        outputStream.writeInt(instance.getMetadata().size());
+        for (Entry<String, String> entry : instance.getMetadata().entrySet()) {
+            writeString(outputStream, entry.getKey());
+            writeString(outputStream, entry.getValue());
+        }
+    }
+    
+    private void writeString(final DataOutputStream outputStream, final String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+    
+    @SneakyThrows(UnsupportedEncodingException.class)
+    private Path getFile(final String serviceName) {
+        return directory.resolve(URLEncoder.encode(serviceName, "UTF-8") + FILE_SUFFIX);
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Path trie of registry keys.
+ */
+public final class PathTrie {
+    
+    private static final String PATH_SEPARATOR = "/";
+    
+    private final Node root = new Node();
+    
+    /**
+     * Add key.
+     *
+     * @param key key
+     */
+    public void add(final String key) {
+        Node node = root;
+        for (String each : split(key)) {
+            node = node.children.computeIfAbsent(each, unused -> new Node());
+        }
+        node.existed = true;
+    }
+    
+    /**
+     * Remove key.
+     *
+     * @param key key
+     */
+    public void remove(final String key) {
+        remove(root, split(key), 0);
+    }
+    
+    private boolean remove(final Node node, final String[] segments, final int index) {
+        if (index == segments.length) {
+            node.existed = false;
+        } else {
+            Node child = node.children.get(segments[index]);
+            if (null != child && remove(child, segments, index + 1)) {
+                node.children.remove(segments[index]);
+            }
+        }
+        return !node.existed && node.children.isEmpty();
+    }
+    
+    /**
+     * Get children names of key.
+     *
+     * @param key key
+     * @return copy of children names
+     */
+    public Collection<String> getChildren(final String key) {
+        Node node = root;
+        for (String each : split(key)) {
+            node = node.children.get(each);
+            if (null == node) {
+                return Collections.emptyList();
+            }
+        }
+        return new ArrayList<>(node.children.keySet());
+    }
+    
+    private String[] split(final String key) {
+        return key.split(PATH_SEPARATOR, -1);
+    }
+    
+    private static final class Node {
+        
+        private final Map<String, Node> children = new ConcurrentHashMap<>();
+        
+        private volatile boolean existed;
+    }
+}
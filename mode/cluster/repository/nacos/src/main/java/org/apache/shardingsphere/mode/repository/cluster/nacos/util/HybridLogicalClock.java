@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.util;
+
+import lombok.RequiredArgsConstructor;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Hybrid logical clock.
+ * 
+ * <p>Version is a single long, physical millis in high bits and logical counter in low {@value #LOGICAL_BITS} bits,
+ * so that versions are compared as numbers and are strictly increasing on one node even within the same millisecond.</p>
+ */
+@RequiredArgsConstructor
+public final class HybridLogicalClock {
+    
+    public static final int LOGICAL_BITS = 16;
+    
+    private final LongSupplier physicalClock;
+    
+    private final AtomicLong lastVersion = new AtomicLong();
+    
+    /**
+     * Generate next version, which is greater than all versions generated or observed before.
+     *
+     * @return next version
+     */
+    public long next() {
+        long physicalVersion = physicalClock.getAsLong() << LOGICAL_BITS;
+        return lastVersion.updateAndGet(each -> Math.max(each + 1L, physicalVersion));
+    }
+    
+    /**
+     * Observe version generated by other node.
+     *
+     * @param version observed version
+     */
+    public void observe(final long version) {
+        lastVersion.accumulateAndGet(version, Math::max);
+    }
+    
+    /**
+     * Get physical millis of version.
+     *
+     * @param version version
+     * @return physical millis
+     */
+    public static long getPhysicalMillis(final long version) {
+        return version >>> LOGICAL_BITS;
+    }
+}
@@ -17,15 +17,27 @@
 
 package org.apache.shardingsphere.mode.repository.cluster.nacos.util;
 
-import com.alibaba.nacos.api.exception.NacosException;
-import com.alibaba.nacos.api.naming.PreservedMetadataKeys;
-import com.alibaba.nacos.api.naming.pojo.Instance;
 import lombok.AccessLevel;
 import lombok.NoArgsConstructor;
 import lombok.SneakyThrows;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * Nacos meta data utility class.
@@ -33,50 +45,135 @@ import java.time.ZoneOffset;
 @NoArgsConstructor(access = AccessLevel.PRIVATE)
 public final class NacosMetaDataUtils {
     
-    public static final ZoneOffset UTC_ZONE_OFFSET = ZoneOffset.of("+8");
+    public static final String VERSION_KEY = "shardingsphere.version";
+    
+    public static final String LEGACY_TIMESTAMP_KEY = "+08:00";
+    
+    public static final String ENCODING_KEY = "shardingsphere.encoding";
+    
+    public static final String GZIP_ENCODING = "gzip";
+    
+    public static final String CHUNK_KEY = "shardingsphere.chunk";
+    
+    public static final String STORAGE_KEY = "shardingsphere.storage";
+    
+    public static final String CONFIG_STORAGE = "config";
+    
+    public static final String PACKED_KEY = "shardingsphere.packed";
+    
+    private static final int VERSION_RADIX = 16;
+    
+    private static final HybridLogicalClock CLOCK = new HybridLogicalClock(System::currentTimeMillis);
+    
+    private static final ZoneOffset LEGACY_ZONE_OFFSET = ZoneOffset.of(LEGACY_TIMESTAMP_KEY);
+    
+    private static final AtomicLong LAST_LEGACY_TIMESTAMP = new AtomicLong();
     
     /**
-     * Get timestamp.
+     * Generate next version of this node.
      * 
-     * @param instance instance
-     * @return timestamp
+     * @return next version
      */
-    public static long getTimestamp(final Instance instance) {
-        return Long.parseLong(instance.getMetadata().get(UTC_ZONE_OFFSET.toString()));
+    public static long nextVersion() {
+        return CLOCK.next();
     }
     
     /**
-     * Get timestamp.
+     * Generate next legacy timestamp of this node, which is strictly increasing and readable by compute nodes of legacy versions.
      * 
-     * @return timeStamp
+     * @return next legacy timestamp
      */
-    public static long getTimestamp() {
-        return LocalDateTime.now().toInstant(UTC_ZONE_OFFSET).toEpochMilli();
+    public static long nextLegacyTimestamp() {
+        long timestamp = LocalDateTime.now().toInstant(LEGACY_ZONE_OFFSET).toEpochMilli();
+        return LAST_LEGACY_TIMESTAMP.accumulateAndGet(timestamp, (last, current) -> Math.max(last + 1L, current));
     }
     
     /**
-     * Get value.
+     * Observe version written by other node, so that versions generated later are greater than it.
      * 
-     * @param instance instance
-     * @return value
+     * @param version observed version
+     */
+    public static void observeVersion(final long version) {
+        CLOCK.observe(version);
+    }
+    
+    /**
+     * Encode version to meta data value.
+     * 
+     * @param version version
+     * @return encoded version
      */
-    public static String getValue(final Instance instance) {
-        return instance.getMetadata().get(getKey(instance));
+    public static String encodeVersion(final long version) {
+        return Long.toString(version, VERSION_RADIX);
     }
     
     /**
-     * Get key.
+     * Decode version from meta data value.
      * 
-     * @param instance instance
-     * @return key
+     * @param encodedVersion encoded version
+     * @return version
+     */
+    public static long decodeVersion(final String encodedVersion) {
+        return Long.parseLong(encodedVersion, VERSION_RADIX);
+    }
+    
+    /**
+     * Decode version from legacy timestamp meta data value.
+     * 
+     * <p>Legacy timestamp is local date time of writer read as offset {@value #LEGACY_TIMESTAMP_KEY}, so it is converted back to epoch millis
+     * with system zone, assuming compute nodes share the same zone as legacy versions already do, to be comparable with hybrid logical clock versions.</p>
+     * 
+     * @param legacyTimestamp legacy timestamp
+     * @return version
+     */
+    public static long decodeLegacyVersion(final String legacyTimestamp) {
+        LocalDateTime localDateTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(Long.parseLong(legacyTimestamp)), LEGACY_ZONE_OFFSET);
+        return localDateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli() << HybridLogicalClock.LOGICAL_BITS;
+    }
+    
+    /**
+     * Get MD5 digest of value.
+     * 
+     * @param value value
+     * @return hex digest
+     */
+    @SneakyThrows(NoSuchAlgorithmException.class)
+    public static String digest(final String value) {
+        byte[] bytes = MessageDigest.getInstance("MD5").digest(value.getBytes(StandardCharsets.UTF_8));
+        return String.format("%032x", new BigInteger(1, bytes));
+    }
+    
+    /**
+     * Compress value with gzip and encode it with base64.
+     * 
+     * @param value value
+     * @return compressed value
+     */
+    @SneakyThrows(IOException.class)
+    public static String compress(final String value) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (OutputStream outputStream = new GZIPOutputStream(result)) {
+            outputStream.write(value.getBytes(StandardCharsets.UTF_8));
+        }
+        return Base64.getEncoder().encodeToString(result.toByteArray());
+    }
+    
+    /**
+     * Decompress value compressed by {@link #compress(String)}.
+     * 
+     * @param compressedValue compressed value
+     * @return value
      */
-    @SneakyThrows(NacosException.class)
-    public static String getKey(final Instance instance) {
-        return instance.getMetadata().keySet().stream()
-                .filter(entryKey -> !PreservedMetadataKeys.HEART_BEAT_INTERVAL.equals(entryKey)
-                        && !PreservedMetadataKeys.HEART_BEAT_TIMEOUT.equals(entryKey)
-                        && !PreservedMetadataKeys.IP_DELETE_TIMEOUT.equals(entryKey)
-                        && !UTC_ZONE_OFFSET.toString().equals(entryKey))
-                .findFirst().orElseThrow(() -> new NacosException(NacosException.RESOURCE_NOT_FOUND, "Failed to find key "));
+    @SneakyThrows(IOException.class)
+    public static String decompress(final String compressedValue) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        try (InputStream inputStream = new GZIPInputStream(new ByteArrayInputStream(Base64.getDecoder().decode(compressedValue)))) {
+            byte[] buffer = new byte[4096];
+            int length;
+            while ((length = inputStream.read(buffer)) > 0) {
+                result.write(buffer, 0, length);
+            }
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
     }
 }
@@ -0,0 +1,426 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos;
+
+import com.alibaba.nacos.api.naming.NamingFactory;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.apache.shardingsphere.mode.event.DataChangedEvent.Type;
+import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepositoryConfiguration;
+import org.apache.shardingsphere.mode.repository.cluster.exception.ClusterRepositoryPersistException;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.lock.DistributedLock;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.fixture.InMemoryNamingService;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.lock.NacosDistributedLock;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.DefaultNacosMetricsCollector;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.ExponentialHistogram;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.NacosOperationType;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.props.NacosPropertyKey;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.MockedStatic;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mockStatic;
+
+class NacosRepositoryTest {
+    
+    private final InMemoryNamingService namingService = new InMemoryNamingService(0L);
+    
+    private final Collection<NacosRepository> repositories = new LinkedList<>();
+    
+    private NacosRepository repository;
+    
+    @BeforeEach
+    void setUp() {
+        repository = createRepository("127.0.0.1");
+    }
+    
+    @AfterEach
+    void tearDown() {
+        repositories.forEach(NacosRepository::close);
+    }
+    
+    private NacosRepository createRepository(final String clusterIp) {
+        return createRepository(clusterIp, new Properties());
+    }
+    
+    private NacosRepository createPackedRepository(final String clusterIp) {
+        Properties props = new Properties();
+        props.setProperty(NacosPropertyKey.EPHEMERAL_PACK_COUNT.getKey(), "1");
+        props.setProperty(NacosPropertyKey.HYBRID_LOGICAL_CLOCK_VERSION.getKey(), Boolean.TRUE.toString());
+        return createRepository(clusterIp, props);
+    }
+    
+    private NacosRepository createRepository(final String clusterIp, final Properties props) {
+        props.setProperty(NacosPropertyKey.CLUSTER_IP.getKey(), clusterIp);
+        props.setProperty(NacosPropertyKey.LISTENER_THREADS.getKey(), "1");
+        props.setProperty(NacosPropertyKey.RETRY_INTERVAL_MILLISECONDS.getKey(), "50");
+        NacosRepository result = new NacosRepository();
+        try (MockedStatic<NamingFactory> namingFactory = mockStatic(NamingFactory.class)) {
+            namingFactory.when(() -> NamingFactory.createNamingService(any(Properties.class))).thenReturn(namingService.createNamingService());
+            result.init(new ClusterPersistRepositoryConfiguration("Nacos", "", clusterIp, props), null);
+        }
+        repositories.add(result);
+        return result;
+    }
+    
+    @Test
+    void assertIsExisted() {
+        repository.persist("/foo/bar", "value");
+        assertThat(repository.isExisted("/foo/bar"), is(true));
+        assertThat(repository.isExisted("/foo"), is(true));
+        assertThat(repository.isExisted("/foo/baz"), is(false));
+    }
+    
+    @Test
+    void assertPersistWithLegacyTimestamp() {
+        repository.persist("/foo", "value");
+        Map<String, String> actual = namingService.getAllInstances("PERSISTENT").get(0).getMetadata();
+        assertThat(actual.keySet(), is(new HashSet<>(Arrays.asList("/foo", NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY))));
+        assertTrue(Long.parseLong(actual.get(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY)) > 0L);
+    }
+    
+    @Test
+    void assertUpdate() {
+        repository.persist("/foo", "value");
+        repository.update("/foo", "new_value");
+        assertThat(repository.query("/foo"), is("new_value"));
+        repository.update("/bar", "value");
+        assertThat(repository.isExisted("/bar"), is(false));
+    }
+    
+    @Test
+    void assertDeleteSubtreeFromDeepestLevel() {
+        repository.persist("/foo/bar/baz", "value");
+        repository.persist("/foo/bar/qux", "value");
+        repository.persist("/foo/quux", "value");
+        repository.persist("/foobar", "value");
+        repository.delete("/foo");
+        assertThat(repository.isExisted("/foo"), is(false));
+        assertThat(repository.isExisted("/foo/bar/baz"), is(false));
+        assertThat(repository.isExisted("/foobar"), is(true));
+        List<String> deregisteredKeys = namingService.getDeregisteredInstances().stream().map(each -> InstanceEntry.decode(each).getKey()).collect(Collectors.toList());
+        assertThat(deregisteredKeys.size(), is(5));
+        assertThat(new HashSet<>(deregisteredKeys.subList(0, 2)), is(new HashSet<>(Arrays.asList("/foo/bar/baz", "/foo/bar/qux"))));
+        assertThat(new HashSet<>(deregisteredKeys.subList(2, 4)), is(new HashSet<>(Arrays.asList("/foo/bar", "/foo/quux"))));
+        assertThat(deregisteredKeys.get(4), is("/foo"));
+    }
+    
+    @Test
+    void assertPersistAsyncConcurrently() {
+        Collection<CompletableFuture<Void>> futures = new LinkedList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(repository.persistAsync("/foo/bar/baz", "value_" + i));
+            futures.add(repository.persistAsync("/foo/bar/qux_" + i, "value"));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+        Map<String, Long> actual = namingService.getAllInstances("PERSISTENT").stream().collect(Collectors.groupingBy(each -> InstanceEntry.decode(each).getKey(), Collectors.counting()));
+        assertThat(actual.size(), is(23));
+        assertTrue(actual.values().stream().allMatch(each -> 1L == each));
+        assertThat(repository.query("/foo/bar/baz"), is("value_19"));
+    }
+    
+    @Test
+    void assertCloseWithPendingAsyncWrites() {
+        NacosRepository closingRepository = createRepository("127.0.0.2");
+        closingRepository.persist("/foo", "value");
+        closingRepository.persist("/bar", "value");
+        namingService.suspendWrites();
+        try {
+            CompletableFuture<Void> persistFuture = closingRepository.persistAsync("/foo", "new_value");
+            CompletableFuture<Void> deleteFuture = closingRepository.deleteAsync("/bar");
+            closingRepository.close();
+            assertCompletedExceptionally(persistFuture);
+            assertCompletedExceptionally(deleteFuture);
+        } finally {
+            namingService.resumeWrites();
+        }
+    }
+    
+    private void assertCompletedExceptionally(final CompletableFuture<Void> future) {
+        ExecutionException actual = assertThrows(ExecutionException.class, () -> future.get(1000L, TimeUnit.MILLISECONDS));
+        assertThat(actual.getCause(), instanceOf(ClusterRepositoryPersistException.class));
+    }
+    
+    @Test
+    void assertRecordLatencyOfWrites() {
+        repository.persistAsync("/foo", "value").join();
+        repository.persistEphemeralAsync("/bar", "value").join();
+        repository.deleteAsync("/foo").join();
+        repository.persistExclusiveEphemeral("/baz", "value");
+        Map<NacosOperationType, ExponentialHistogram> actual = ((DefaultNacosMetricsCollector) repository.getMetricsCollector()).getLatencyHistograms();
+        assertThat(actual.get(NacosOperationType.PERSIST).getCount(), is(1L));
+        assertThat(actual.get(NacosOperationType.PERSIST_EPHEMERAL).getCount(), is(1L));
+        assertThat(actual.get(NacosOperationType.DELETE).getCount(), is(1L));
+        assertThat(actual.get(NacosOperationType.PERSIST_EXCLUSIVE_EPHEMERAL).getCount(), is(1L));
+    }
+    
+    @Test
+    void assertReadLegacyKeysAfterPartitioned() {
+        repository.persist("/foo/bar", "value");
+        repository.persist("/foo/baz", "value");
+        repository.persistEphemeral("/foo/qux", "value");
+        Properties props = new Properties();
+        props.setProperty(NacosPropertyKey.PARTITION_PREFIXES.getKey(), "/foo");
+        NacosRepository partitionedRepository = createRepository("127.0.0.2", props);
+        assertThat(partitionedRepository.query("/foo/bar"), is("value"));
+        assertThat(partitionedRepository.query(Arrays.asList("/foo/bar", "/foo/qux")).size(), is(2));
+        assertThat(partitionedRepository.getChildrenKeys("/foo"), is(Arrays.asList("qux", "baz", "bar")));
+        assertTrue(partitionedRepository.isExisted("/foo/qux"));
+        partitionedRepository.update("/foo/bar", "new_value");
+        assertThat(partitionedRepository.query("/foo/bar"), is("new_value"));
+        assertThat(partitionedRepository.query(Arrays.asList("/foo/bar", "/foo/baz")).get("/foo/bar"), is("new_value"));
+        partitionedRepository.delete("/foo/bar");
+        assertFalse(partitionedRepository.isExisted("/foo/bar"));
+        assertTrue(namingService.getAllInstances("PERSISTENT").stream().noneMatch(each -> "/foo/bar".equals(InstanceEntry.decode(each).getKey())));
+    }
+    
+    @Test
+    void assertBatchQuery() {
+        repository.persist("/foo", "foo_value");
+        repository.persist("/bar", "bar_value");
+        repository.persistEphemeral("/baz", "baz_value");
+        Map<String, String> actual = repository.query(Arrays.asList("/foo", "/bar", "/baz", "/qux"));
+        assertThat(actual.size(), is(3));
+        assertThat(actual.get("/foo"), is("foo_value"));
+        assertThat(actual.get("/bar"), is("bar_value"));
+        assertThat(actual.get("/baz"), is("baz_value"));
+    }
+    
+    @Test
+    void assertUpdateVisibleToOtherNode() {
+        NacosRepository otherRepository = createRepository("127.0.0.2");
+        repository.persist("/foo", "value");
+        otherRepository.update("/foo", "new_value");
+        repository.update("/foo", "newer_value");
+        namingService.awaitPushes();
+        assertThat(otherRepository.query("/foo"), is("newer_value"));
+    }
+    
+    @Test
+    void assertLazyReconcileWithInstancesOfSameIp() {
+        repository.persist("/foo", "value");
+        repository.persistEphemeral("/bar", "value");
+        NacosRepository restartedRepository = createRepository("127.0.0.1");
+        assertThat(restartedRepository.query("/foo"), is("value"));
+        assertThat(restartedRepository.query("/bar"), is("value"));
+        restartedRepository.persist("/baz", "value");
+        restartedRepository.persistEphemeral("/qux", "value");
+        assertThat(namingService.getAllInstances("PERSISTENT").stream().map(Instance::toInetAddr).distinct().count(), is(2L));
+        assertThat(namingService.getAllInstances("EPHEMERAL").stream().map(Instance::toInetAddr).distinct().count(), is(2L));
+        assertThat(restartedRepository.query("/foo"), is("value"));
+        assertThat(restartedRepository.query("/bar"), is("value"));
+    }
+    
+    @Test
+    void assertRemoveDataListener() throws InterruptedException {
+        List<String> fooEvents = new CopyOnWriteArrayList<>();
+        List<String> barEvents = new CopyOnWriteArrayList<>();
+        DataChangedEventListener fooListener = event -> fooEvents.add(event.getKey());
+        repository.watch("/foo", fooListener);
+        repository.watch("/foo", event -> barEvents.add(event.getKey()));
+        repository.removeDataListener("/foo", fooListener);
+        repository.persist("/foo/bar", "value");
+        repository.removeDataListener("/foo");
+        CountDownLatch latch = new CountDownLatch(1);
+        repository.watch("/foo/baz", event -> latch.countDown());
+        repository.persist("/foo/baz", "value");
+        assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+        assertThat(fooEvents, is(Collections.emptyList()));
+        assertThat(barEvents, is(Arrays.asList("/foo", "/foo/bar")));
+        assertThat(namingService.getSubscriberCount("PERSISTENT"), is(1));
+        repository.close();
+        assertThat(namingService.getSubscriberCount("PERSISTENT"), is(0));
+    }
+    
+    @Test
+    void assertUnsubscribeAfterLastListenerRemoved() {
+        DataChangedEventListener listener = event -> {
+        };
+        repository.watch("/foo", listener);
+        repository.watch("/foo/bar", listener);
+        repository.removeDataListener("/foo/bar", listener);
+        assertThat(namingService.getSubscriberCount("PERSISTENT"), is(1));
+        repository.removeDataListener("/foo");
+        assertThat(namingService.getSubscriberCount("PERSISTENT"), is(0));
+        assertThat(namingService.getSubscriberCount("EPHEMERAL"), is(0));
+        createRepository("127.0.0.2").persist("/foo", "value");
+        namingService.awaitPushes();
+        assertThat(repository.query("/foo"), is("value"));
+        assertThat(namingService.getSubscriberCount("PERSISTENT"), is(2));
+    }
+    
+    @Test
+    void assertWatchAfterReconcileWithStaleSnapshotFile() throws IOException, InterruptedException {
+        Properties props = new Properties();
+        props.setProperty(NacosPropertyKey.SNAPSHOT_DIRECTORY.getKey(), Files.createTempDirectory("nacos-snapshot").toString());
+        repository.persist("/foo/bar", "value");
+        repository.persist("/foo/baz", "value");
+        NacosRepository staleRepository = createRepository("127.0.0.2", props);
+        assertThat(staleRepository.query("/foo/baz"), is("value"));
+        staleRepository.close();
+        repository.persist("/foo/bar", "new_value");
+        repository.delete("/foo/baz");
+        NacosRepository restartedRepository = createRepository("127.0.0.2", props);
+        restartedRepository.persist("/other", "value");
+        List<DataChangedEvent> events = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(2);
+        restartedRepository.watch("/foo", event -> {
+            events.add(event);
+            latch.countDown();
+        });
+        assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+        assertThat(events.get(0).getKey(), is("/foo/bar"));
+        assertThat(events.get(0).getValue(), is("new_value"));
+        assertThat(events.get(0).getType(), is(Type.UPDATED));
+        assertThat(events.get(1).getKey(), is("/foo/baz"));
+        assertThat(events.get(1).getType(), is(Type.DELETED));
+    }
+    
+    @Test
+    void assertTryLockExclusively() {
+        NacosRepository otherRepository = createRepository("127.0.0.2");
+        DistributedLock lock = new NacosDistributedLock("/lock/foo", repository);
+        DistributedLock otherLock = new NacosDistributedLock("/lock/foo", otherRepository);
+        assertTrue(lock.tryLock(1000L));
+        assertFalse(otherLock.tryLock(200L));
+        lock.unlock();
+        assertTrue(otherLock.tryLock(1000L));
+        otherLock.unlock();
+    }
+    
+    @Test
+    void assertTryLockInterruptedRemovesWaiter() {
+        NacosRepository otherRepository = createRepository("127.0.0.2");
+        DistributedLock lock = new NacosDistributedLock("/lock/foo", repository);
+        assertTrue(lock.tryLock(1000L));
+        Thread.currentThread().interrupt();
+        try {
+            assertFalse(new NacosDistributedLock("/lock/foo", otherRepository).tryLock(1000L));
+        } finally {
+            assertTrue(Thread.interrupted());
+        }
+        namingService.awaitPushes();
+        assertThat(repository.getChildrenKeys("/lock/foo").size(), is(1));
+        lock.unlock();
+    }
+    
+    @Test
+    void assertUnlockWithoutLock() {
+        DistributedLock lock = new NacosDistributedLock("/lock/foo", repository);
+        lock.unlock();
+        assertTrue(lock.tryLock(1000L));
+        lock.unlock();
+        lock.unlock();
+    }
+    
+    @Test
+    void assertTryLockNotTakeOverLockedWaiter() {
+        Instance instance = new Instance();
+        instance.setIp("127.0.0.9");
+        instance.setPort(1);
+        instance.setEphemeral(true);
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put("/lock/foo/9999999999999999999-other", "locked");
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(NacosMetaDataUtils.nextVersion()));
+        instance.setMetadata(metadataMap);
+        namingService.register("EPHEMERAL", instance);
+        namingService.awaitPushes();
+        assertFalse(new NacosDistributedLock("/lock/foo", repository).tryLock(200L));
+        assertThat(repository.getChildrenKeys("/lock/foo"), is(Collections.singletonList("9999999999999999999-other")));
+    }
+    
+    @Test
+    void assertTryLockKeepsOtherWatchers() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        repository.watch("/lock/foo", event -> {
+            if ("/lock/foo/bar".equals(event.getKey()) && Type.ADDED == event.getType()) {
+                latch.countDown();
+            }
+        });
+        DistributedLock lock = new NacosDistributedLock("/lock/foo", repository);
+        assertTrue(lock.tryLock(1000L));
+        lock.unlock();
+        repository.persist("/lock/foo/bar", "value");
+        assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+    }
+    
+    @Test
+    void assertDeletePackedKeyOfOtherNodeWithWholePack() {
+        NacosRepository packedRepository = createPackedRepository("127.0.0.2");
+        NacosRepository otherPackedRepository = createPackedRepository("127.0.0.3");
+        packedRepository.persistEphemeral("/foo/bar", "value");
+        packedRepository.persistEphemeral("/baz", "value");
+        otherPackedRepository.persistEphemeral("/foo/qux", "value");
+        namingService.awaitPushes();
+        otherPackedRepository.delete("/foo");
+        assertThat(otherPackedRepository.isExisted("/foo"), is(false));
+        assertThat(otherPackedRepository.isExisted("/baz"), is(false));
+        assertTrue(getPackedKeys("127.0.0.2").isEmpty());
+        assertTrue(getPackedKeys("127.0.0.3").isEmpty());
+        namingService.awaitPushes();
+        assertThat(packedRepository.isExisted("/foo/bar"), is(false));
+    }
+    
+    @Test
+    void assertReconcilePackWithPushedInstance() {
+        NacosRepository packedRepository = createPackedRepository("127.0.0.2");
+        packedRepository.persistEphemeral("/foo", "value");
+        packedRepository.persistEphemeral("/bar", "value");
+        Instance rewrittenInstance = namingService.getAllInstances("EPHEMERAL").get(0);
+        rewrittenInstance.getMetadata().remove("/foo");
+        rewrittenInstance.getMetadata().put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(NacosMetaDataUtils.nextVersion()));
+        namingService.register("EPHEMERAL", rewrittenInstance);
+        namingService.awaitPushes();
+        packedRepository.persistEphemeral("/baz", "value");
+        assertThat(getPackedKeys("127.0.0.2"), is(new HashSet<>(Arrays.asList("/bar", "/baz"))));
+    }
+    
+    private Collection<String> getPackedKeys(final String ip) {
+        return namingService.getAllInstances("EPHEMERAL").stream().filter(each -> ip.equals(each.getIp()))
+                .flatMap(each -> InstanceEntry.decodeAll(each).stream()).map(InstanceEntry::getKey).collect(Collectors.toSet());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.benchmark;
+
+import com.alibaba.nacos.api.naming.NamingFactory;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.apache.shardingsphere.mode.repository.cluster.ClusterPersistRepositoryConfiguration;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.NacosRepository;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.fixture.InMemoryNamingService;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.mockito.MockedStatic;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mockStatic;
+
+/**
+ * Benchmark of Nacos repository against in-memory naming service.
+ *
+ * <p>Run with {@code java -cp <test classpath> org.openjdk.jmh.Main NacosRepositoryBenchmark -p latencyMicros=500}.</p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class NacosRepositoryBenchmark {
+    
+    private static final String PERSISTENT_SERVICE_NAME = "PERSISTENT";
+    
+    private static final String CLUSTER_IP = "127.0.0.1";
+    
+    private static final String ROOT_PATH = "/benchmark";
+    
+    private static final String KEYS_PATH = ROOT_PATH + "/keys";
+    
+    @Param({"1000", "10000", "100000"})
+    private int keyCount;
+    
+    @Param("0")
+    private long latencyMicros;
+    
+    private final AtomicLong remoteVersion = new AtomicLong(NacosMetaDataUtils.nextVersion());
+    
+    private InMemoryNamingService namingService;
+    
+    private NacosRepository repository;
+    
+    private volatile CountDownLatch eventLatch;
+    
+    /**
+     * Set up.
+     */
+    @Setup(Level.Trial)
+    public void setUp() {
+        namingService = new InMemoryNamingService(latencyMicros);
+        namingService.register(PERSISTENT_SERVICE_NAME, createInstance(ROOT_PATH, "", 0));
+        namingService.register(PERSISTENT_SERVICE_NAME, createInstance(KEYS_PATH, "", 1));
+        for (int i = 0; i < keyCount; i++) {
+            namingService.register(PERSISTENT_SERVICE_NAME, createInstance(getKey(i), "value", i + 2));
+        }
+        Properties props = new Properties();
+        props.setProperty("clusterIp", CLUSTER_IP);
+        repository = new NacosRepository();
+        try (MockedStatic<NamingFactory> namingFactory = mockStatic(NamingFactory.class)) {
+            namingFactory.when(() -> NamingFactory.createNamingService(any(Properties.class))).thenReturn(namingService.createNamingService());
+            repository.init(new ClusterPersistRepositoryConfiguration("Nacos", "", CLUSTER_IP, props), null);
+        }
+        repository.watch(ROOT_PATH, event -> {
+            CountDownLatch latch = eventLatch;
+            if (null != latch) {
+                latch.countDown();
+            }
+        });
+    }
+    
+    private Instance createInstance(final String key, final String value, final int index) {
+        Instance result = new Instance();
+        result.setIp(CLUSTER_IP);
+        result.setPort(Integer.MIN_VALUE + 1 + index);
+        result.setEphemeral(false);
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put(key, value);
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(remoteVersion.incrementAndGet()));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private String getKey(final int index) {
+        return KEYS_PATH + "/key_" + index;
+    }
+    
+    /**
+     * Tear down.
+     */
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        repository.close();
+    }
+    
+    /**
+     * Benchmark persisting existed key.
+     */
+    @Benchmark
+    public void persist() {
+        repository.persist(getKey(ThreadLocalRandom.current().nextInt(keyCount)), String.valueOf(System.nanoTime()));
+    }
+    
+    /**
+     * Benchmark querying key.
+     *
+     * @return value
+     */
+    @Benchmark
+    public String query() {
+        return repository.query(getKey(ThreadLocalRandom.current().nextInt(keyCount)));
+    }
+    
+    /**
+     * Benchmark getting children keys.
+     *
+     * @return children keys
+     */
+    @Benchmark
+    public List<String> getChildrenKeys() {
+        return repository.getChildrenKeys(KEYS_PATH);
+    }
+    
+    /**
+     * Benchmark deleting key.
+     *
+     * @param state delete state
+     */
+    @Benchmark
+    public void delete(final DeleteState state) {
+        repository.delete(state.key);
+    }
+    
+    /**
+     * Benchmark dispatching event of remote change to listener.
+     *
+     * @throws InterruptedException interrupted exception
+     */
+    @Benchmark
+    public void eventFanOut() throws InterruptedException {
+        int index = ThreadLocalRandom.current().nextInt(keyCount);
+        CountDownLatch latch = new CountDownLatch(1);
+        eventLatch = latch;
+        namingService.register(PERSISTENT_SERVICE_NAME, createInstance(getKey(index), String.valueOf(System.nanoTime()), index + 2));
+        latch.await();
+    }
+    
+    /**
+     * Delete state.
+     */
+    @State(Scope.Thread)
+    public static class DeleteState {
+        
+        private String key;
+        
+        /**
+         * Persist key to be deleted.
+         *
+         * @param benchmark benchmark
+         */
+        @Setup(Level.Invocation)
+        public void setUp(final NacosRepositoryBenchmark benchmark) {
+            key = KEYS_PATH + "/deleted_" + Thread.currentThread().getId();
+            benchmark.repository.persist(key, "value");
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.config;
+
+import com.alibaba.nacos.api.exception.NacosException;
+import lombok.SneakyThrows;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.fixture.InMemoryConfigService;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ConfigValueStoreTest {
+    
+    @Test
+    void assertPublishAndLoad() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        new ConfigValueStore(configService.createConfigService(), 1000L, 10L).publish("/metadata/foo_db", "value");
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        assertThat(store.load("/metadata/foo_db", NacosMetaDataUtils.digest("value")), is("value"));
+        assertThat(store.load("/metadata/foo_db", NacosMetaDataUtils.digest("value")), is("value"));
+        assertThat(configService.getGetConfigCount().get(), is(1));
+        assertThat(store.load("/metadata/foo_db/schemas", NacosMetaDataUtils.digest("")), is(""));
+        assertThat(configService.getGetConfigCount().get(), is(1));
+    }
+    
+    @Test
+    void assertLoadUntilPublished() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        ConfigValueStore otherStore = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        CompletableFuture.runAsync(() -> {
+            while (configService.getGetConfigCount().get() < 2) {
+                Thread.yield();
+            }
+            publish(otherStore, "/key", "value");
+        });
+        assertThat(store.load("/key", NacosMetaDataUtils.digest("value")), is("value"));
+    }
+    
+    @Test
+    void assertLoadTimeoutIfNotPublished() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 50L, 10L);
+        store.publish("/key", "old_value");
+        assertThrows(NacosException.class, () -> new ConfigValueStore(configService.createConfigService(), 50L, 10L).load("/key", NacosMetaDataUtils.digest("new_value")));
+    }
+    
+    @Test
+    void assertLoadSupersededValue() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        store.publish("/key", "old_value");
+        store.publish("/key", "new_value");
+        ConfigValueStore otherStore = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        assertThat(otherStore.load("/key", NacosMetaDataUtils.digest("old_value")), is("old_value"));
+        assertThat(otherStore.load("/key", NacosMetaDataUtils.digest("new_value")), is("new_value"));
+    }
+    
+    @Test
+    void assertPublishEmptyValue() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        store.publish("/key", "");
+        assertThat(configService.getConfigs().isEmpty(), is(true));
+        assertThat(store.load("/key", NacosMetaDataUtils.digest("")), is(""));
+    }
+    
+    @Test
+    void assertRemove() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        store.publish("/key", "value");
+        store.remove("/key", NacosMetaDataUtils.digest("value"));
+        assertThat(configService.getConfigs().isEmpty(), is(true));
+        assertThat(store.findCachedValue("/key", NacosMetaDataUtils.digest("value")).isPresent(), is(false));
+    }
+    
+    @Test
+    void assertRemoveSupersededValue() throws NacosException {
+        InMemoryConfigService configService = new InMemoryConfigService();
+        ConfigValueStore store = new ConfigValueStore(configService.createConfigService(), 1000L, 10L);
+        store.publish("/key", "old_value");
+        store.publish("/key", "new_value");
+        store.remove("/key", NacosMetaDataUtils.digest("old_value"));
+        assertThat(configService.getConfigs().size(), is(1));
+        assertThat(store.findCachedValue("/key", NacosMetaDataUtils.digest("new_value")).get(), is("new_value"));
+    }
+    
+    @SneakyThrows(NacosException.class)
+    private void publish(final ConfigValueStore store, final String key, final String value) {
+        store.publish(key, value);
+    }
+    
+    @Test
+    void assertGetDataId() {
+        assertThat(ConfigValueStore.getDataId("/metadata/foo_db.rules_1"), is("_2Fmetadata_2Ffoo_5Fdb.rules_5F1"));
+    }
+}
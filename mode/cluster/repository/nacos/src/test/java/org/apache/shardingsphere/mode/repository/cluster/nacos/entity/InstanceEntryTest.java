@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import com.alibaba.nacos.api.naming.PreservedMetadataKeys;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class InstanceEntryTest {
+    
+    @Test
+    void assertDecode() {
+        Instance instance = new Instance();
+        instance.setEphemeral(true);
+        Map<String, String> metadataMap = new HashMap<>(5, 1F);
+        metadataMap.put(PreservedMetadataKeys.HEART_BEAT_INTERVAL, "10000");
+        metadataMap.put(PreservedMetadataKeys.HEART_BEAT_TIMEOUT, "20000");
+        metadataMap.put(PreservedMetadataKeys.IP_DELETE_TIMEOUT, "30000");
+        metadataMap.put("/key", "value");
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, "1");
+        instance.setMetadata(metadataMap);
+        InstanceEntry actual = InstanceEntry.decode(instance);
+        assertThat(actual.getInstance(), is(instance));
+        assertThat(actual.getKey(), is("/key"));
+        assertThat(actual.getValue(), is("value"));
+        assertThat(actual.getVersion(), is(1L));
+        assertThat(actual.isEphemeral(), is(true));
+    }
+    
+    @Test
+    void assertMatchesConfigStoredValue() {
+        Instance instance = new Instance();
+        Map<String, String> metadataMap = new HashMap<>(3, 1F);
+        metadataMap.put("/key", NacosMetaDataUtils.digest("value"));
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, "1");
+        metadataMap.put(NacosMetaDataUtils.STORAGE_KEY, NacosMetaDataUtils.CONFIG_STORAGE);
+        instance.setMetadata(metadataMap);
+        InstanceEntry actual = InstanceEntry.decode(instance);
+        assertThat(actual.isConfigStored(), is(true));
+        assertThat(actual.matches("value"), is(true));
+        assertThat(actual.matches("other_value"), is(false));
+        assertThat(actual.matches(null), is(false));
+    }
+    
+    @Test
+    void assertDecodeLegacyTimestamp() {
+        Instance instance = new Instance();
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put("/key", "value");
+        metadataMap.put(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY, "1");
+        instance.setMetadata(metadataMap);
+        assertThat(InstanceEntry.decode(instance).getVersion(), is(NacosMetaDataUtils.decodeLegacyVersion("1")));
+    }
+    
+    @Test
+    void assertDecodeVersionPreferredToLegacyTimestamp() {
+        Instance instance = new Instance();
+        Map<String, String> metadataMap = new HashMap<>(3, 1F);
+        metadataMap.put("/key", "value");
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, "1");
+        metadataMap.put(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY, "2");
+        instance.setMetadata(metadataMap);
+        assertThat(InstanceEntry.decode(instance).getVersion(), is(1L));
+        assertThat(InstanceEntry.decodeVersion(instance), is(1L));
+    }
+    
+    @Test
+    void assertDecodeAllPacked() {
+        Instance instance = new Instance();
+        instance.setEphemeral(true);
+        Map<String, String> metadataMap = new HashMap<>(5, 1F);
+        metadataMap.put(PreservedMetadataKeys.HEART_BEAT_INTERVAL, "10000");
+        metadataMap.put(NacosMetaDataUtils.PACKED_KEY, Boolean.TRUE.toString());
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, "3");
+        metadataMap.put("/foo", InstanceEntry.getPackedValue(1L, "foo_value"));
+        metadataMap.put("/bar", InstanceEntry.getPackedValue(2L, "bar:value"));
+        instance.setMetadata(metadataMap);
+        Map<String, InstanceEntry> actual = InstanceEntry.decodeAll(instance).stream().collect(Collectors.toMap(InstanceEntry::getKey, Function.identity()));
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get("/foo").getValue(), is("foo_value"));
+        assertThat(actual.get("/foo").getVersion(), is(1L));
+        assertThat(actual.get("/bar").getValue(), is("bar:value"));
+        assertThat(actual.get("/bar").getVersion(), is(2L));
+        assertThat(actual.get("/bar").isPacked(), is(true));
+        assertThat(InstanceEntry.decodeVersion(instance), is(3L));
+    }
+    
+    @Test
+    void assertAssembleChunks() {
+        String compressedValue = NacosMetaDataUtils.compress("value");
+        InstanceEntry firstChunk = InstanceEntry.decode(createChunkInstance(compressedValue.substring(0, 4), 0));
+        InstanceEntry secondChunk = InstanceEntry.decode(createChunkInstance(compressedValue.substring(4), 1));
+        assertThat(firstChunk.isPlain(), is(false));
+        assertThat(firstChunk.getChunkCount(), is(2));
+        assertThat(secondChunk.getChunkIndex(), is(1));
+        assertThat(InstanceEntry.assemble(Arrays.asList(secondChunk, firstChunk)).map(InstanceEntry::getValue), is(Optional.of("value")));
+        assertThat(InstanceEntry.assemble(Collections.singletonList(firstChunk)).isPresent(), is(false));
+    }
+    
+    private Instance createChunkInstance(final String chunk, final int chunkIndex) {
+        Instance result = new Instance();
+        Map<String, String> metadataMap = new HashMap<>(4, 1F);
+        metadataMap.put("/key", chunk);
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, "1");
+        metadataMap.put(NacosMetaDataUtils.ENCODING_KEY, NacosMetaDataUtils.GZIP_ENCODING);
+        metadataMap.put(NacosMetaDataUtils.CHUNK_KEY, InstanceEntry.getChunk(chunkIndex, 2));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+}
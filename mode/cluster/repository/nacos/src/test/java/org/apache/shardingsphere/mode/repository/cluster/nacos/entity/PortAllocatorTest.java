@@ -0,0 +1,53 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class PortAllocatorTest {
+    
+    @Test
+    void assertAllocate() {
+        PortAllocator portAllocator = new PortAllocator(Collections.emptyList());
+        assertThat(portAllocator.allocate(), is(Integer.MIN_VALUE + 1));
+        assertThat(portAllocator.allocate(), is(Integer.MIN_VALUE + 2));
+    }
+    
+    @Test
+    void assertAllocateWithAllocatedPorts() {
+        PortAllocator portAllocator = new PortAllocator(Arrays.asList(Integer.MIN_VALUE + 1, Integer.MIN_VALUE + 3, 8080));
+        assertThat(portAllocator.allocate(), is(Integer.MIN_VALUE + 2));
+        assertThat(portAllocator.allocate(), is(Integer.MIN_VALUE + 4));
+    }
+    
+    @Test
+    void assertAllocateReleasedPort() {
+        PortAllocator portAllocator = new PortAllocator(Collections.emptyList());
+        int port = portAllocator.allocate();
+        portAllocator.allocate();
+        portAllocator.release(port);
+        assertThat(portAllocator.allocate(), is(port));
+        assertThat(portAllocator.allocate(), is(Integer.MIN_VALUE + 3));
+    }
+}
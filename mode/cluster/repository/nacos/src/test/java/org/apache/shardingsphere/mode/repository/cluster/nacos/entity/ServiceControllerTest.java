@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.entity;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ServiceControllerTest {
+    
+    private final ServiceController serviceController = new ServiceController(Arrays.asList("/nodes", "/nodes/compute_nodes", "/metadata"));
+    
+    @Test
+    void assertGetAllServices() {
+        assertThat(serviceController.getAllServices().size(), is(8));
+    }
+    
+    @Test
+    void assertGetService() {
+        assertThat(serviceController.getService("/nodes/compute_nodes/online", true).getServiceName(), is("EPHEMERAL/nodes/compute_nodes"));
+        assertThat(serviceController.getService("/nodes/compute_nodes", false).getServiceName(), is("PERSISTENT/nodes/compute_nodes"));
+        assertThat(serviceController.getService("/nodes/qualified_data_sources", false).getServiceName(), is("PERSISTENT/nodes"));
+        assertThat(serviceController.getService("/metadata_other", false).getServiceName(), is("PERSISTENT"));
+        assertThat(serviceController.getService("/rules", true).getServiceName(), is("EPHEMERAL"));
+    }
+    
+    @Test
+    void assertGetLegacyServices() {
+        assertThat(serviceController.getLegacyServices("/nodes/compute_nodes/online").stream().map(ServiceMetaData::getServiceName).collect(Collectors.toSet()),
+                is(new HashSet<>(Arrays.asList("PERSISTENT", "EPHEMERAL"))));
+        assertTrue(serviceController.getLegacyServices("/rules").isEmpty());
+    }
+    
+    @Test
+    void assertGetCoveringServices() {
+        assertThat(serviceController.getCoveringServices("/nodes").stream().map(ServiceMetaData::getServiceName).collect(Collectors.toSet()),
+                is(new HashSet<>(Arrays.asList("PERSISTENT/nodes", "EPHEMERAL/nodes", "PERSISTENT/nodes/compute_nodes", "EPHEMERAL/nodes/compute_nodes", "PERSISTENT", "EPHEMERAL"))));
+        assertThat(serviceController.getCoveringServices("/metadata/foo_db").stream().map(ServiceMetaData::getServiceName).collect(Collectors.toSet()),
+                is(new HashSet<>(Arrays.asList("PERSISTENT/metadata", "EPHEMERAL/metadata", "PERSISTENT", "EPHEMERAL"))));
+        assertThat(serviceController.getCoveringServices("/").size(), is(8));
+    }
+    
+    @Test
+    void assertGetServicesWithoutPartition() {
+        assertThat(new ServiceController(Collections.emptyList()).getServices("/nodes").stream().map(ServiceMetaData::getServiceName).collect(Collectors.toSet()),
+                is(new HashSet<>(Arrays.asList("PERSISTENT", "EPHEMERAL"))));
+    }
+}
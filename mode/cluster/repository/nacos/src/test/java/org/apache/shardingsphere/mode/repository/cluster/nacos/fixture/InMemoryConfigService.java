@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.fixture;
+
+import com.alibaba.nacos.api.config.ConfigService;
+import lombok.Getter;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-memory config service, which keeps configs of all groups in memory.
+ */
+@Getter
+public final class InMemoryConfigService implements InvocationHandler {
+    
+    private final Map<String, String> configs = new ConcurrentHashMap<>();
+    
+    private final AtomicInteger getConfigCount = new AtomicInteger();
+    
+    /**
+     * Create config service.
+     *
+     * @return config service
+     */
+    public ConfigService createConfigService() {
+        return (ConfigService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{ConfigService.class}, this);
+    }
+    
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (Object.class == method.getDeclaringClass()) {
+            return method.invoke(this, args);
+        }
+        switch (method.getName()) {
+            case "getConfig":
+                getConfigCount.incrementAndGet();
+                return configs.get(args[1] + "@" + args[0]);
+            case "publishConfig":
+                configs.put(args[1] + "@" + args[0], (String) args[2]);
+                return true;
+            case "removeConfig":
+                configs.remove(args[1] + "@" + args[0]);
+                return true;
+            case "shutDown":
+                return null;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.fixture;
+
+import com.alibaba.nacos.api.naming.NamingService;
+import com.alibaba.nacos.api.naming.listener.EventListener;
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.common.util.concurrent.Uninterruptibles;
+import lombok.SneakyThrows;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+/**
+ * In-memory naming service, which simulates network latency of remote calls and push events of Nacos server.
+ */
+public final class InMemoryNamingService implements InvocationHandler {
+    
+    private final long latencyMicros;
+    
+    private final Map<String, Map<String, Instance>> serviceInstances = new ConcurrentHashMap<>();
+    
+    private final Map<String, Collection<EventListener>> serviceListeners = new ConcurrentHashMap<>();
+    
+    private final Collection<String> pushingServiceNames = ConcurrentHashMap.newKeySet();
+    
+    private final List<Instance> deregisteredInstances = new CopyOnWriteArrayList<>();
+    
+    private final ExecutorService pushExecutor = Executors.newSingleThreadExecutor(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("in-memory-nacos-push-%d").build());
+    
+    private volatile CountDownLatch writeLatch = new CountDownLatch(0);
+    
+    public InMemoryNamingService(final long latencyMicros) {
+        this.latencyMicros = latencyMicros;
+    }
+    
+    /**
+     * Create naming service.
+     *
+     * @return naming service
+     */
+    public NamingService createNamingService() {
+        return (NamingService) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{NamingService.class}, this);
+    }
+    
+    @Override
+    public Object invoke(final Object proxy, final Method method, final Object[] args) throws Throwable {
+        if (Object.class == method.getDeclaringClass()) {
+            return method.invoke(this, args);
+        }
+        switch (method.getName()) {
+            case "registerInstance":
+                Uninterruptibles.awaitUninterruptibly(writeLatch);
+                simulateLatency();
+                register((String) args[0], getInstance(method, args));
+                return null;
+            case "deregisterInstance":
+                Uninterruptibles.awaitUninterruptibly(writeLatch);
+                simulateLatency();
+                deregister((String) args[0], getInstance(method, args));
+                return null;
+            case "getAllInstances":
+                simulateLatency();
+                return getAllInstances((String) args[0]);
+            case "subscribe":
+                serviceListeners.computeIfAbsent((String) args[0], unused -> new CopyOnWriteArrayList<>()).add((EventListener) args[args.length - 1]);
+                return null;
+            case "unsubscribe":
+                serviceListeners.getOrDefault((String) args[0], Collections.emptyList()).remove((EventListener) args[args.length - 1]);
+                return null;
+            case "shutDown":
+                return null;
+            default:
+                throw new UnsupportedOperationException(method.toString());
+        }
+    }
+    
+    private Instance getInstance(final Method method, final Object[] args) {
+        if (args[args.length - 1] instanceof Instance) {
+            return (Instance) args[args.length - 1];
+        }
+        throw new UnsupportedOperationException(method.toString());
+    }
+    
+    private void simulateLatency() {
+        if (latencyMicros > 0L) {
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        }
+    }
+    
+    /**
+     * Register instance as if it is registered by a remote client.
+     *
+     * @param serviceName service name
+     * @param instance instance
+     */
+    public void register(final String serviceName, final Instance instance) {
+        serviceInstances.computeIfAbsent(serviceName, unused -> new ConcurrentHashMap<>()).put(instance.toInetAddr(), copy(instance));
+        push(serviceName);
+    }
+    
+    private void deregister(final String serviceName, final Instance instance) {
+        deregisteredInstances.add(copy(instance));
+        serviceInstances.getOrDefault(serviceName, Collections.emptyMap()).remove(instance.toInetAddr());
+        push(serviceName);
+    }
+    
+    /**
+     * Get all instances of service.
+     *
+     * @param serviceName service name
+     * @return all instances of service
+     */
+    public List<Instance> getAllInstances(final String serviceName) {
+        return serviceInstances.getOrDefault(serviceName, Collections.emptyMap()).values().stream().map(this::copy).collect(Collectors.toList());
+    }
+    
+    private void push(final String serviceName) {
+        if (serviceListeners.getOrDefault(serviceName, Collections.emptyList()).isEmpty() || !pushingServiceNames.add(serviceName)) {
+            return;
+        }
+        pushExecutor.execute(() -> {
+            pushingServiceNames.remove(serviceName);
+            simulateLatency();
+            NamingEvent event = new NamingEvent(serviceName, getAllInstances(serviceName));
+            serviceListeners.getOrDefault(serviceName, Collections.emptyList()).forEach(each -> each.onEvent(event));
+        });
+    }
+    
+    /**
+     * Suspend instances registered and deregistered by clients until writes are resumed.
+     */
+    public void suspendWrites() {
+        writeLatch = new CountDownLatch(1);
+    }
+    
+    /**
+     * Resume suspended writes.
+     */
+    public void resumeWrites() {
+        writeLatch.countDown();
+    }
+    
+    /**
+     * Get count of subscribers of service.
+     *
+     * @param serviceName service name
+     * @return count of subscribers
+     */
+    public int getSubscriberCount(final String serviceName) {
+        return serviceListeners.getOrDefault(serviceName, Collections.emptyList()).size();
+    }
+    
+    /**
+     * Get deregistered instances in order of deregistration.
+     *
+     * @return deregistered instances
+     */
+    public List<Instance> getDeregisteredInstances() {
+        return new ArrayList<>(deregisteredInstances);
+    }
+    
+    /**
+     * Wait until push events issued before are delivered to listeners.
+     */
+    @SneakyThrows({InterruptedException.class, ExecutionException.class})
+    public void awaitPushes() {
+        pushExecutor.submit(() -> {
+        }).get();
+    }
+    
+    private Instance copy(final Instance instance) {
+        Instance result = new Instance();
+        result.setIp(instance.getIp());
+        result.setPort(instance.getPort());
+        result.setEphemeral(instance.isEphemeral());
+        result.setMetadata(new HashMap<>(instance.getMetadata()));
+        return result;
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.listener;
+
+import lombok.SneakyThrows;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.apache.shardingsphere.mode.event.DataChangedEvent.Type;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.DefaultNacosMetricsCollector;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ListenerExecutorTest {
+    
+    @Test
+    void assertExecuteInOrderOfListener() throws InterruptedException {
+        DefaultNacosMetricsCollector metricsCollector = new DefaultNacosMetricsCollector();
+        ListenerExecutor listenerExecutor = new ListenerExecutor(4, 20, metricsCollector);
+        List<DataChangedEvent> fooEvents = Collections.synchronizedList(new ArrayList<>());
+        List<DataChangedEvent> barEvents = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(20);
+        DataChangedEventListener fooListener = event -> {
+            fooEvents.add(event);
+            latch.countDown();
+        };
+        DataChangedEventListener barListener = event -> {
+            barEvents.add(event);
+            latch.countDown();
+        };
+        for (int i = 0; i < 10; i++) {
+            String value = String.valueOf(i);
+            listenerExecutor.submit(fooListener, () -> new DataChangedEvent("/foo", value, Type.UPDATED));
+            listenerExecutor.submit(barListener, () -> new DataChangedEvent("/bar", value, Type.UPDATED));
+        }
+        assertThat(metricsCollector.getListenerQueueDepth(), is(20));
+        listenerExecutor.flush();
+        assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+        listenerExecutor.shutdown(1000L);
+        List<String> expected = Arrays.asList("0", "1", "2", "3", "4", "5", "6", "7", "8", "9");
+        assertThat(fooEvents.stream().map(DataChangedEvent::getValue).collect(Collectors.toList()), is(expected));
+        assertThat(barEvents.stream().map(DataChangedEvent::getValue).collect(Collectors.toList()), is(expected));
+        assertThat(metricsCollector.getListenerQueueDepth(), is(0));
+    }
+    
+    @Test
+    void assertFlushWithoutBlockingWhenStripeIsFull() throws InterruptedException {
+        DefaultNacosMetricsCollector metricsCollector = new DefaultNacosMetricsCollector();
+        ListenerExecutor listenerExecutor = new ListenerExecutor(1, 2, metricsCollector);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch released = new CountDownLatch(1);
+        listenerExecutor.submit(event -> {
+            started.countDown();
+            awaitQuietly(released);
+        }, () -> new DataChangedEvent("/foo", "", Type.UPDATED));
+        listenerExecutor.flush();
+        assertTrue(started.await(1000L, TimeUnit.MILLISECONDS));
+        List<String> values = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch latch = new CountDownLatch(4);
+        DataChangedEventListener listener = event -> {
+            values.add(event.getValue());
+            latch.countDown();
+        };
+        for (int i = 0; i < 5; i++) {
+            String value = String.valueOf(i);
+            listenerExecutor.submit(listener, () -> new DataChangedEvent("/bar", value, Type.UPDATED));
+            listenerExecutor.flush();
+        }
+        assertThat(metricsCollector.getDroppedListenerEventCount().sum(), is(1L));
+        released.countDown();
+        assertTrue(latch.await(1000L, TimeUnit.MILLISECONDS));
+        listenerExecutor.shutdown(1000L);
+        assertThat(values, is(Arrays.asList("0", "1", "2", "3")));
+    }
+    
+    @SneakyThrows(InterruptedException.class)
+    private void awaitQuietly(final CountDownLatch latch) {
+        latch.await();
+    }
+    
+    @Test
+    void assertExecuteAfterFailedEvent() {
+        ListenerExecutor listenerExecutor = new ListenerExecutor(1, 2, new DefaultNacosMetricsCollector());
+        List<DataChangedEvent> events = Collections.synchronizedList(new ArrayList<>());
+        DataChangedEventListener listener = events::add;
+        listenerExecutor.submit(listener, () -> {
+            throw new IllegalStateException("Failed to load value");
+        });
+        listenerExecutor.submit(listener, () -> new DataChangedEvent("/foo", "value", Type.UPDATED));
+        listenerExecutor.flush();
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.stream().map(DataChangedEvent::getValue).collect(Collectors.toList()), is(Collections.singletonList("value")));
+    }
+}
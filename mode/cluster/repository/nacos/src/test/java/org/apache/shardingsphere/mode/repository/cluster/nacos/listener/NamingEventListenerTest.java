@@ -0,0 +1,162 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.listener;
+
+import com.alibaba.nacos.api.naming.listener.NamingEvent;
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.apache.shardingsphere.mode.event.DataChangedEvent;
+import org.apache.shardingsphere.mode.event.DataChangedEvent.Type;
+import org.apache.shardingsphere.mode.repository.cluster.listener.DataChangedEventListener;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.metrics.DefaultNacosMetricsCollector;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot.InstanceSnapshot;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class NamingEventListenerTest {
+    
+    private final List<DataChangedEvent> events = new LinkedList<>();
+    
+    private final ListenerExecutor listenerExecutor = new ListenerExecutor(1, 16, new DefaultNacosMetricsCollector());
+    
+    @Test
+    void assertOnEventWithAddedInstance() {
+        NamingEventListener listener = createListener();
+        listener.onEvent(new NamingEvent("PERSISTENT", Arrays.asList(createInstance("/foo/bar", "value", 1, 1L), createInstance("/other", "value", 2, 1L))));
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(1));
+        assertEvent(events.get(0), "/foo/bar", "value", Type.ADDED);
+    }
+    
+    @Test
+    void assertLoadValueByListenerThread() {
+        List<String> loaderThreadNames = new LinkedList<>();
+        NamingEventListener listener = new NamingEventListener(new InstanceSnapshot(), listenerExecutor, new DefaultNacosMetricsCollector(), entry -> {
+            loaderThreadNames.add(Thread.currentThread().getName());
+            return entry.getValue();
+        }, InstanceEntry::getValue);
+        listener.put("/foo", events::add);
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L))));
+        listenerExecutor.shutdown(1000L);
+        assertThat(loaderThreadNames.size(), is(1));
+        assertThat(loaderThreadNames.get(0).startsWith("nacos-listener-"), is(true));
+        assertEvent(events.get(0), "/foo/bar", "value", Type.ADDED);
+    }
+    
+    @Test
+    void assertOnEventWithUnchangedInstance() {
+        NamingEventListener listener = createListener();
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L))));
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L))));
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(1));
+    }
+    
+    @Test
+    void assertOnEventWithUpdatedInstance() {
+        NamingEventListener listener = createListener();
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L))));
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "new_value", 1, 2L))));
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(2));
+        assertEvent(events.get(1), "/foo/bar", "new_value", Type.UPDATED);
+    }
+    
+    @Test
+    void assertOnEventWithDeletedInstances() {
+        NamingEventListener listener = createListener();
+        listener.onEvent(new NamingEvent("PERSISTENT", Arrays.asList(createInstance("/foo", "", 1, 1L), createInstance("/foo/bar", "value", 2, 1L))));
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.emptyList()));
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(4));
+        assertEvent(events.get(2), "/foo/bar", "value", Type.DELETED);
+        assertEvent(events.get(3), "/foo", "", Type.DELETED);
+    }
+    
+    @Test
+    void assertOnEventAfterRemove() {
+        NamingEventListener listener = createListener();
+        DataChangedEventListener otherListener = events::add;
+        listener.put("/foo", otherListener);
+        assertThat(listener.remove("/foo", otherListener), is(true));
+        assertThat(listener.remove("/foo", otherListener), is(false));
+        assertThat(listener.remove("/foo"), is(1));
+        assertThat(listener.remove("/foo"), is(0));
+        listener.onEvent(new NamingEvent("PERSISTENT", Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L))));
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(0));
+    }
+    
+    @Test
+    void assertReplayChangesToListenerPutAfterReconcile() {
+        NamingEventListener listener = new NamingEventListener(new InstanceSnapshot(), listenerExecutor, new DefaultNacosMetricsCollector(), InstanceEntry::getValue, InstanceEntry::getValue);
+        listener.refresh(Arrays.asList(createInstance("/foo/bar", "value", 1, 1L), createInstance("/foo/baz", "value", 2, 1L), createInstance("/foo/qux", "value", 3, 1L)));
+        listener.replayChangesToLaterListeners();
+        listener.refresh(Arrays.asList(createInstance("/foo/bar", "new_value", 1, 2L), createInstance("/foo/qux", "value", 3, 1L), createInstance("/foo/quux", "value", 4, 1L)));
+        listener.put("/foo", events::add);
+        listener.put("/other", events::add);
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.size(), is(3));
+        assertEvent(events.get(0), "/foo/bar", "new_value", Type.UPDATED);
+        assertEvent(events.get(1), "/foo/quux", "value", Type.ADDED);
+        assertEvent(events.get(2), "/foo/baz", "value", Type.DELETED);
+    }
+    
+    @Test
+    void assertNotReplayChangesWithoutSnapshotFile() {
+        NamingEventListener listener = new NamingEventListener(new InstanceSnapshot(), listenerExecutor, new DefaultNacosMetricsCollector(), InstanceEntry::getValue, InstanceEntry::getValue);
+        listener.refresh(Collections.singletonList(createInstance("/foo/bar", "value", 1, 1L)));
+        listener.refresh(Collections.singletonList(createInstance("/foo/bar", "new_value", 1, 2L)));
+        listener.put("/foo", events::add);
+        listenerExecutor.shutdown(1000L);
+        assertThat(events.isEmpty(), is(true));
+    }
+    
+    private NamingEventListener createListener() {
+        NamingEventListener result = new NamingEventListener(new InstanceSnapshot(), listenerExecutor, new DefaultNacosMetricsCollector(), InstanceEntry::getValue, InstanceEntry::getValue);
+        result.put("/foo", events::add);
+        return result;
+    }
+    
+    private Instance createInstance(final String key, final String value, final int port, final long version) {
+        Instance result = new Instance();
+        result.setIp("127.0.0.1");
+        result.setPort(port);
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put(key, value);
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(version));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private void assertEvent(final DataChangedEvent actual, final String key, final String value, final Type type) {
+        assertThat(actual.getKey(), is(key));
+        assertThat(actual.getValue(), is(value));
+        assertThat(actual.getType(), is(type));
+    }
+}
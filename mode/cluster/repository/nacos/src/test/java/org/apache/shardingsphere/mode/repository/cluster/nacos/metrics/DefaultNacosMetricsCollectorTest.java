@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class DefaultNacosMetricsCollectorTest {
+    
+    @Test
+    void assertRecord() {
+        DefaultNacosMetricsCollector collector = new DefaultNacosMetricsCollector();
+        collector.recordLatency(NacosOperationType.QUERY, TimeUnit.MILLISECONDS.toNanos(2L));
+        collector.recordGetAllInstances(10);
+        collector.recordGetAllInstances(5);
+        collector.recordWaitValueRetry();
+        collector.recordWaitValueTimeout();
+        collector.recordPushEvent(3);
+        collector.recordDispatchLag(TimeUnit.MICROSECONDS.toNanos(7L));
+        collector.registerListenerQueueDepth(() -> 4);
+        collector.recordListenerEventDropped();
+        assertThat(collector.getLatencyHistograms().get(NacosOperationType.QUERY).getSum(), is(2000L));
+        assertThat(collector.getLatencyHistograms().get(NacosOperationType.PERSIST).getCount(), is(0L));
+        assertThat(collector.getGetAllInstancesCount().sum(), is(2L));
+        assertThat(collector.getScannedInstanceCount().sum(), is(15L));
+        assertThat(collector.getWaitValueRetryCount().sum(), is(1L));
+        assertThat(collector.getWaitValueTimeoutCount().sum(), is(1L));
+        assertThat(collector.getPushEventSizeHistogram().getSum(), is(3L));
+        assertThat(collector.getDispatchLagHistogram().getSum(), is(7L));
+        assertThat(collector.getListenerQueueDepth(), is(4));
+        assertThat(collector.getDroppedListenerEventCount().sum(), is(1L));
+    }
+}
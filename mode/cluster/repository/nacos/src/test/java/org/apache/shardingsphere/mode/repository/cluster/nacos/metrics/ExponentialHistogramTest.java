@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class ExponentialHistogramTest {
+    
+    @Test
+    void assertRecord() {
+        ExponentialHistogram histogram = new ExponentialHistogram();
+        histogram.record(0L);
+        histogram.record(1L);
+        histogram.record(3L);
+        histogram.record(4L);
+        histogram.record(Long.MAX_VALUE >> 1);
+        long[] actual = histogram.getBucketCounts();
+        assertThat(actual[0], is(2L));
+        assertThat(actual[2], is(2L));
+        assertThat(actual[actual.length - 1], is(1L));
+        assertThat(histogram.getCount(), is(5L));
+        assertThat(ExponentialHistogram.getBucketUpperBound(2), is(4L));
+        assertThat(ExponentialHistogram.getBucketUpperBound(actual.length - 1), is(Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class InstanceSnapshotFileTest {
+    
+    @Test
+    void assertSaveAndLoad() throws IOException {
+        InstanceSnapshotFile snapshotFile = new InstanceSnapshotFile(Files.createTempDirectory("nacos-snapshot"));
+        assertThat(snapshotFile.load("PERSISTENT/metadata").isPresent(), is(false));
+        snapshotFile.save("PERSISTENT/metadata", Collections.singleton(createInstance()));
+        Optional<List<Instance>> actual = snapshotFile.load("PERSISTENT/metadata");
+        assertThat(actual.isPresent(), is(true));
+        assertThat(actual.get().size(), is(1));
+        Instance instance = actual.get().get(0);
+        assertThat(instance.getIp(), is("127.0.0.1"));
+        assertThat(instance.getPort(), is(Integer.MIN_VALUE + 1));
+        assertThat(instance.isEphemeral(), is(true));
+        assertThat(instance.getMetadata(), is(createInstance().getMetadata()));
+    }
+    
+    @Test
+    void assertLoadBrokenFile() throws IOException {
+        Path directory = Files.createTempDirectory("nacos-snapshot");
+        Files.write(directory.resolve("PERSISTENT.snapshot"), new byte[]{1, 2, 3});
+        assertThat(new InstanceSnapshotFile(directory).load("PERSISTENT").isPresent(), is(false));
+    }
+    
+    private Instance createInstance() {
+        Instance result = new Instance();
+        result.setIp("127.0.0.1");
+        result.setPort(Integer.MIN_VALUE + 1);
+        result.setEphemeral(true);
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put("/key", "value");
+        metadataMap.put("shardingsphere.version", "1");
+        result.setMetadata(metadataMap);
+        return result;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import com.alibaba.nacos.api.naming.pojo.Instance;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.InstanceEntry;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.entity.KeyValue;
+import org.apache.shardingsphere.mode.repository.cluster.nacos.util.NacosMetaDataUtils;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class InstanceSnapshotTest {
+    
+    @Test
+    void assertFind() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        Instance instance = createInstance("/key", "value", 1);
+        snapshot.refresh(Arrays.asList(instance, createInstance("/key/child", "child", 2)));
+        assertThat(snapshot.find("/key").size(), is(1));
+        assertThat(snapshot.find("/key").iterator().next().getInstance(), is(instance));
+        assertThat(snapshot.findAll().size(), is(2));
+    }
+    
+    @Test
+    void assertFindWithDuplicatedKey() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Arrays.asList(createInstance("/key", "value", 1), createInstance("/key", "other_value", 2)));
+        assertThat(snapshot.find("/key").size(), is(2));
+    }
+    
+    @Test
+    void assertRefreshWithRemovedInstance() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Arrays.asList(createInstance("/key", "value", 1), createInstance("/key/child", "child", 2)));
+        snapshot.refresh(Collections.singleton(createInstance("/key", "value", 1)));
+        assertThat(snapshot.find("/key/child").isEmpty(), is(true));
+        assertThat(snapshot.findAll().size(), is(1));
+    }
+    
+    @Test
+    void assertExpectAvailableKeyValue() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Collections.singleton(createInstance("/key", "value", 1)));
+        assertThat(snapshot.expect(Collections.singleton(new KeyValue("/key", "value", false))).isDone(), is(true));
+    }
+    
+    @Test
+    void assertExpectKeyValueCompletedByRefresh() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Collections.singleton(createInstance("/key", "value", 1)));
+        CompletableFuture<Void> actual = snapshot.expect(Arrays.asList(new KeyValue("/key", "new_value", false), new KeyValue("/key/child", "child", false)));
+        assertThat(actual.isDone(), is(false));
+        snapshot.refresh(Collections.singleton(createInstance("/key", "new_value", 1)));
+        assertThat(actual.isDone(), is(false));
+        snapshot.refresh(Arrays.asList(createInstance("/key", "new_value", 1), createInstance("/key/child", "child", 2)));
+        assertThat(actual.isDone(), is(true));
+    }
+    
+    @Test
+    void assertExpectDeletedKeyCompletedByRefresh() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Collections.singleton(createInstance("/key", "value", 1)));
+        CompletableFuture<Void> actual = snapshot.expect(Collections.singleton(new KeyValue("/key", null, false)));
+        assertThat(actual.isDone(), is(false));
+        snapshot.refresh(Collections.emptyList());
+        assertThat(actual.isDone(), is(true));
+    }
+    
+    @Test
+    void assertRegisterPendingInstanceUntilPushed() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        Instance instance = createInstance("/key", "value", 1);
+        snapshot.refresh(Collections.singleton(instance));
+        Instance pendingInstance = createInstance("/key", "new_value", 1);
+        assertThat(snapshot.register(Collections.singleton(pendingInstance), Long.MAX_VALUE).size(), is(1));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("new_value")));
+        assertThat(snapshot.refresh(Collections.singleton(instance)).isEmpty(), is(true));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("new_value")));
+        assertThat(snapshot.hasPendingInstances(), is(true));
+        assertThat(snapshot.refresh(Collections.singleton(pendingInstance)).isEmpty(), is(true));
+        assertThat(snapshot.hasPendingInstances(), is(false));
+    }
+    
+    @Test
+    void assertDeregisterPendingInstanceUntilPushed() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        Instance instance = createInstance("/key", "value", 1);
+        snapshot.refresh(Collections.singleton(instance));
+        snapshot.deregister(Collections.singleton(instance), Long.MAX_VALUE);
+        assertThat(snapshot.find("/key").isEmpty(), is(true));
+        snapshot.refresh(Collections.singleton(instance));
+        assertThat(snapshot.find("/key").isEmpty(), is(true));
+        snapshot.refresh(Collections.emptyList());
+        assertThat(snapshot.hasPendingInstances(), is(false));
+    }
+    
+    @Test
+    void assertDiscardExpiredPendingInstance() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        Instance instance = createInstance("/key", "value", 1);
+        snapshot.refresh(Collections.singleton(instance));
+        snapshot.register(Collections.singleton(createInstance("/key", "new_value", 1)), 0L);
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("new_value")));
+        snapshot.refresh(Collections.singleton(instance));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("value")));
+        assertThat(snapshot.hasPendingInstances(), is(false));
+    }
+    
+    @Test
+    void assertRegisterPendingPackedInstanceWithRemovedKey() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Collections.singleton(createPackedInstance(Collections.singletonMap("/foo", "foo_value"))));
+        Map<String, String> packedValues = new HashMap<>(2, 1F);
+        packedValues.put("/foo", "foo_value");
+        packedValues.put("/bar", "bar_value");
+        snapshot.register(Collections.singleton(createPackedInstance(packedValues)), Long.MAX_VALUE);
+        assertThat(snapshot.findLatest("/bar").map(InstanceEntry::getValue), is(Optional.of("bar_value")));
+        snapshot.register(Collections.singleton(createPackedInstance(Collections.singletonMap("/bar", "bar_value"))), Long.MAX_VALUE);
+        assertThat(snapshot.find("/foo").isEmpty(), is(true));
+        assertThat(snapshot.findLatest("/bar").map(InstanceEntry::getValue), is(Optional.of("bar_value")));
+    }
+    
+    @Test
+    void assertFindLatestWithKeys() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        snapshot.refresh(Arrays.asList(createInstance("/key", "value", 1), createInstance("/key/child", "child", 2)));
+        Map<String, InstanceEntry> actual = snapshot.findLatest(Arrays.asList("/key", "/key/child", "/absent"));
+        assertThat(actual.size(), is(2));
+        assertThat(actual.get("/key").getValue(), is("value"));
+        assertThat(actual.get("/key/child").getValue(), is("child"));
+    }
+    
+    @Test
+    void assertFindLatestWithChunkedValue() {
+        InstanceSnapshot snapshot = new InstanceSnapshot();
+        Instance firstChunk = createChunkInstance("val", 0, 1, 1L);
+        Instance secondChunk = createChunkInstance("ue", 1, 2, 1L);
+        snapshot.refresh(Arrays.asList(firstChunk, secondChunk));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("value")));
+        snapshot.refresh(Arrays.asList(firstChunk, secondChunk, createChunkInstance("new_", 0, 3, 2L)));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("value")));
+        assertThat(snapshot.isAvailable(new KeyValue("/key", "new_value", false)), is(false));
+        snapshot.refresh(Arrays.asList(createChunkInstance("new_", 0, 3, 2L), createChunkInstance("value", 1, 4, 2L)));
+        assertThat(snapshot.findLatest("/key").map(InstanceEntry::getValue), is(Optional.of("new_value")));
+        assertThat(snapshot.isAvailable(new KeyValue("/key", "new_value", false)), is(true));
+    }
+    
+    private Instance createChunkInstance(final String chunk, final int chunkIndex, final int port, final long version) {
+        Instance result = new Instance();
+        result.setIp("127.0.0.1");
+        result.setPort(port);
+        Map<String, String> metadataMap = new HashMap<>(3, 1F);
+        metadataMap.put("/key", chunk);
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(version));
+        metadataMap.put(NacosMetaDataUtils.CHUNK_KEY, InstanceEntry.getChunk(chunkIndex, 2));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private Instance createPackedInstance(final Map<String, String> packedValues) {
+        Instance result = new Instance();
+        result.setIp("127.0.0.1");
+        result.setPort(1);
+        Map<String, String> metadataMap = new HashMap<>(packedValues.size() + 2, 1F);
+        metadataMap.put(NacosMetaDataUtils.PACKED_KEY, Boolean.TRUE.toString());
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(NacosMetaDataUtils.nextVersion()));
+        packedValues.forEach((key, value) -> metadataMap.put(key, InstanceEntry.getPackedValue(NacosMetaDataUtils.nextVersion(), value)));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+    
+    private Instance createInstance(final String key, final String value, final int port) {
+        Instance result = new Instance();
+        result.setIp("127.0.0.1");
+        result.setPort(port);
+        Map<String, String> metadataMap = new HashMap<>(2, 1F);
+        metadataMap.put(key, value);
+        metadataMap.put(NacosMetaDataUtils.VERSION_KEY, NacosMetaDataUtils.encodeVersion(NacosMetaDataUtils.nextVersion()));
+        result.setMetadata(metadataMap);
+        return result;
+    }
+}
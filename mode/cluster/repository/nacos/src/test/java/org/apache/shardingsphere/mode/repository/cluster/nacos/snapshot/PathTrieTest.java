@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.snapshot;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class PathTrieTest {
+    
+    @Test
+    void assertGetChildren() {
+        PathTrie trie = new PathTrie();
+        trie.add("/metadata/foo_db/schemas/foo_schema");
+        trie.add("/metadata/bar_db");
+        assertThat(new HashSet<>(trie.getChildren("/metadata")), is(new HashSet<>(Arrays.asList("foo_db", "bar_db"))));
+        assertThat(new HashSet<>(trie.getChildren("/metadata/foo_db")), is(Collections.singleton("schemas")));
+        assertThat(new HashSet<>(trie.getChildren("")), is(Collections.singleton("metadata")));
+        assertThat(trie.getChildren("/metadata/foo_db/schemas/foo_schema").isEmpty(), is(true));
+        assertThat(trie.getChildren("/nodes").isEmpty(), is(true));
+    }
+    
+    @Test
+    void assertRemoveLeaf() {
+        PathTrie trie = new PathTrie();
+        trie.add("/metadata/foo_db/schemas/foo_schema");
+        trie.add("/metadata/bar_db");
+        trie.remove("/metadata/foo_db/schemas/foo_schema");
+        assertThat(new HashSet<>(trie.getChildren("/metadata")), is(Collections.singleton("bar_db")));
+    }
+    
+    @Test
+    void assertRemoveKeyWithChildren() {
+        PathTrie trie = new PathTrie();
+        trie.add("/metadata/foo_db");
+        trie.add("/metadata/foo_db/schemas");
+        trie.remove("/metadata/foo_db");
+        assertThat(new HashSet<>(trie.getChildren("/metadata")), is(Collections.singleton("foo_db")));
+        trie.remove("/metadata/foo_db/schemas");
+        assertThat(trie.getChildren("/metadata").isEmpty(), is(true));
+    }
+    
+    @Test
+    void assertGetChildrenReturnsCopy() {
+        PathTrie trie = new PathTrie();
+        trie.add("/metadata/foo_db");
+        trie.getChildren("/metadata").clear();
+        assertThat(new HashSet<>(trie.getChildren("/metadata")), is(Collections.singleton("foo_db")));
+    }
+}
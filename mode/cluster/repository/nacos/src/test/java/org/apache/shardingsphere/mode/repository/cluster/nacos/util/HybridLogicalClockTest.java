@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class HybridLogicalClockTest {
+    
+    @Test
+    void assertNextWithinSameMillis() {
+        HybridLogicalClock clock = new HybridLogicalClock(() -> 1L);
+        long first = clock.next();
+        long second = clock.next();
+        assertThat(second, is(first + 1L));
+        assertThat(HybridLogicalClock.getPhysicalMillis(second), is(1L));
+    }
+    
+    @Test
+    void assertNextWithClockGoingBackwards() {
+        AtomicLong millis = new AtomicLong(10L);
+        HybridLogicalClock clock = new HybridLogicalClock(millis::get);
+        long first = clock.next();
+        millis.set(5L);
+        assertThat(clock.next() > first, is(true));
+        millis.set(20L);
+        assertThat(clock.next(), is(20L << HybridLogicalClock.LOGICAL_BITS));
+    }
+    
+    @Test
+    void assertNextAfterObserve() {
+        HybridLogicalClock clock = new HybridLogicalClock(() -> 1L);
+        long observed = 100L << HybridLogicalClock.LOGICAL_BITS;
+        clock.observe(observed);
+        assertThat(clock.next(), is(observed + 1L));
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.shardingsphere.mode.repository.cluster.nacos.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+class NacosMetaDataUtilsTest {
+    
+    @Test
+    void assertDecodeLegacyVersionInUTC() {
+        assertDecodeLegacyVersion("UTC");
+    }
+    
+    @Test
+    void assertDecodeLegacyVersionInNegativeOffset() {
+        assertDecodeLegacyVersion("America/New_York");
+    }
+    
+    private void assertDecodeLegacyVersion(final String zoneId) {
+        TimeZone defaultTimeZone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(zoneId));
+        try {
+            long startMillis = System.currentTimeMillis();
+            long actual = NacosMetaDataUtils.decodeLegacyVersion(String.valueOf(LocalDateTime.now().toInstant(ZoneOffset.of(NacosMetaDataUtils.LEGACY_TIMESTAMP_KEY)).toEpochMilli()));
+            long endMillis = System.currentTimeMillis();
+            assertThat(HybridLogicalClock.getPhysicalMillis(actual) >= startMillis && HybridLogicalClock.getPhysicalMillis(actual) <= endMillis, is(true));
+            NacosMetaDataUtils.observeVersion(actual);
+            assertThat(HybridLogicalClock.getPhysicalMillis(NacosMetaDataUtils.nextVersion()) <= System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(1L), is(true));
+        } finally {
+            TimeZone.setDefault(defaultTimeZone);
+        }
+    }
+}